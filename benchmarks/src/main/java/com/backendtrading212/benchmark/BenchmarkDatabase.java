@@ -0,0 +1,63 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.BackendTrading212Application;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class BenchmarkDatabase {
+
+    static final String[] SYMBOLS = {"BTC", "ETH", "SOL", "ADA", "XRP", "DOT", "DOGE", "LTC", "LINK", "AVAX"};
+
+    private BenchmarkDatabase() {
+    }
+
+    public static ConfigurableApplicationContext start(String... extraProperties) {
+        List<String> properties = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "trading.compaction.enabled=false",
+                "logging.level.root=WARN"));
+        properties.addAll(List.of(extraProperties));
+
+        return new SpringApplicationBuilder(BackendTrading212Application.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(properties.toArray(String[]::new))
+                .run();
+    }
+
+    public static long createUser(JdbcTemplate jdbc, String username) {
+        jdbc.update("INSERT INTO users (username, balance) VALUES (?, ?)", username, new BigDecimal("1000000000.00"));
+        return jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+    }
+
+    public static void seedTransactions(JdbcTemplate jdbc, long userId, int count) {
+        int batchSize = 10_000;
+        long start = System.currentTimeMillis() - count * 1000L;
+        List<Object[]> batch = new ArrayList<>(batchSize);
+
+        for (int i = 0; i < count; i++) {
+            String symbol = SYMBOLS[i % SYMBOLS.length];
+            String type = i % 3 == 2 ? "SELL" : "BUY";
+            BigDecimal price = BigDecimal.valueOf(100 + (i % 500), 0).setScale(2);
+            batch.add(new Object[]{userId, symbol, new BigDecimal("0.5000000000"), price, type, new Timestamp(start + i * 1000L)});
+
+            if (batch.size() == batchSize || i == count - 1) {
+                jdbc.batchUpdate("""
+                    INSERT INTO transactions (user_id, crypto_symbol, quantity, price, type, timestamp)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                """, batch);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.backendtrading212.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load against an in-process server backed by H2.
+ * <pre>
+ * java -cp target/benchmarks.jar com.backendtrading212.benchmark.LoadTest [platform|virtual] [clients] [seconds]
+ * </pre>
+ * The virtual mode needs a JDK 21+ runtime; on older JDKs Spring ignores spring.threads.virtual.enabled.
+ */
+public final class LoadTest {
+
+    private static final int USERS = 500;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "platform";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        if (mode.equals("virtual") && Runtime.version().feature() < 21) {
+            System.out.println("WARNING: JDK " + Runtime.version().feature() + " has no virtual threads, results reflect platform mode");
+        }
+
+        try (ConfigurableApplicationContext context = start(mode)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            List<String> users = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                String username = "load-" + i;
+                long userId = BenchmarkDatabase.createUser(jdbc, username);
+                BenchmarkDatabase.seedTransactions(jdbc, userId, 20);
+                users.add(username);
+            }
+            jdbc.update("""
+                INSERT INTO positions (user_id, crypto_symbol, bought_qty, bought_amount, sold_qty, sold_amount)
+                SELECT user_id, crypto_symbol, SUM(quantity), SUM(quantity * price), 0, 0 FROM transactions GROUP BY user_id, crypto_symbol
+            """);
+
+            run(port, users, clients, seconds, context.getBean(MeterRegistry.class), mode);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mode) {
+        return new SpringApplicationBuilder(com.backendtrading212.BackendTrading212Application.class)
+                .web(WebApplicationType.SERVLET)
+                .logStartupInfo(false)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.datasource.hikari.maximum-pool-size=20",
+                        "spring.datasource.hikari.connection-timeout=30000",
+                        "server.tomcat.max-connections=20000",
+                        "server.tomcat.accept-count=1000",
+                        "trading.compaction.enabled=false",
+                        "trading.purge.enabled=false",
+                        "logging.level.root=WARN")
+                .profiles(mode.equals("virtual") ? new String[]{"virtual-threads"} : new String[0])
+                .run();
+    }
+
+    private static void run(int port, List<String> users, int clients, int seconds, MeterRegistry meterRegistry, String mode)
+            throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+        LongAdder completed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong next = new AtomicLong();
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.min(5, seconds / 3));
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+
+        CompletableFuture<?>[] loops = new CompletableFuture<?>[clients];
+        for (int i = 0; i < clients; i++) {
+            loops[i] = loop(http, port, users, next, warmupEnd, end, completed, failed, latencies);
+        }
+        CompletableFuture.allOf(loops).exceptionally(e -> null).join();
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").timer();
+        Timer admission = meterRegistry.find("trading.datasource.admission.wait").timer();
+        System.out.printf("%nmode=%s clients=%d seconds=%d%n", mode, clients, seconds);
+        System.out.printf("throughput=%.0f req/s ok=%d failed=%d%n", completed.sum() / (double) seconds, completed.sum(), failed.sum());
+        if (sorted.length > 0) {
+            System.out.printf("latency p50=%.1fms p99=%.1fms max=%.1fms%n",
+                    sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6, sorted[sorted.length - 1] / 1e6);
+        }
+        if (acquire != null) {
+            System.out.printf("pool acquire mean=%.2fms max=%.2fms%n", acquire.mean(TimeUnit.MILLISECONDS), acquire.max(TimeUnit.MILLISECONDS));
+        }
+        if (admission != null) {
+            System.out.printf("admission wait mean=%.2fms max=%.2fms%n", admission.mean(TimeUnit.MILLISECONDS), admission.max(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static CompletableFuture<Void> loop(HttpClient http, int port, List<String> users, AtomicLong next,
+                                                long warmupEnd, long end, LongAdder completed, LongAdder failed,
+                                                ConcurrentLinkedQueue<Long> latencies) {
+        long start = System.nanoTime();
+        if (start >= end) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String user = users.get((int) (next.getAndIncrement() % users.size()));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/pnl/" + user))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (start >= warmupEnd) {
+                        if (error == null && response.statusCode() == 200) {
+                            completed.increment();
+                            latencies.add(System.nanoTime() - start);
+                        } else {
+                            failed.increment();
+                        }
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> loop(http, port, users, next, warmupEnd, end, completed, failed, latencies));
+    }
+}
@@ -0,0 +1,86 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.marketdata.LatestPriceTable;
+import com.backendtrading212.marketdata.TickRingBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarketDataBenchmark {
+
+    private static final int TICKS = 1 << 12;
+
+    @Param({"16", "1024"})
+    private int symbols;
+
+    private TickRingBuffer ring;
+    private LatestPriceTable table;
+    private int[] tickSymbols;
+    private long[] tickPrices;
+    private List<String> portfolio;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ring = new TickRingBuffer(1 << 16);
+        table = new LatestPriceTable(symbols, Long.MAX_VALUE / 2);
+        Random random = new Random(42);
+        tickSymbols = new int[TICKS];
+        tickPrices = new long[TICKS];
+        for (int i = 0; i < TICKS; i++) {
+            tickSymbols[i] = random.nextInt(symbols);
+            tickPrices[i] = 1_000_000 + random.nextInt(10_000);
+        }
+        for (int i = 0; i < symbols; i++) {
+            table.publish(table.symbolId("SYM" + i), 1_000_000, System.currentTimeMillis());
+        }
+        portfolio = IntStream.range(0, Math.min(symbols, 20)).mapToObj(i -> "SYM" + (i * 7 % symbols)).toList();
+    }
+
+    @Benchmark
+    @Group("ingest")
+    public boolean produce() {
+        int i = cursor++ & (TICKS - 1);
+        return ring.offer(tickSymbols[i], tickPrices[i], i);
+    }
+
+    @Benchmark
+    @Group("ingest")
+    public int conflate() {
+        return ring.drain(table::publish, 4096);
+    }
+
+    @Benchmark
+    @Group("lookup")
+    public void publish() {
+        int i = cursor++ & (TICKS - 1);
+        table.publish(tickSymbols[i], tickPrices[i], Long.MAX_VALUE / 4);
+    }
+
+    @Benchmark
+    @Group("lookup")
+    @GroupThreads(3)
+    public void quote(Blackhole blackhole) {
+        for (String symbol : portfolio) {
+            blackhole.consume(table.quote(symbol));
+        }
+    }
+
+    @Benchmark
+    @Group("valuation")
+    public Map<String, BigDecimal> portfolioPrices() {
+        return table.freshPrices(portfolio);
+    }
+}
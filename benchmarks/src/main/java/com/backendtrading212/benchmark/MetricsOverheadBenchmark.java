@@ -0,0 +1,55 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.model.Position;
+import com.backendtrading212.repository.PositionRepository;
+import com.backendtrading212.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"false", "true"})
+    private boolean metrics;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepo;
+    private PositionRepository positionRepo;
+    private long userId;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = BenchmarkDatabase.start("trading.metrics.repositories.enabled=" + metrics);
+        userRepo = context.getBean(UserRepository.class);
+        positionRepo = context.getBean(PositionRepository.class);
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        userId = BenchmarkDatabase.createUser(jdbc, "metered");
+        BenchmarkDatabase.seedTransactions(jdbc, userId, 1000);
+        positionRepo.rebuildPositions(userId);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long cachedIdLookup() {
+        return userRepo.findIdByUsername("metered");
+    }
+
+    @Benchmark
+    public List<Position> positionsQuery() {
+        return positionRepo.getPositionsByUserId(userId);
+    }
+}
@@ -0,0 +1,65 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.matching.Order;
+import com.backendtrading212.matching.OrderBook;
+import com.backendtrading212.matching.OrderType;
+import com.backendtrading212.matching.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBookBenchmark {
+
+    private static final int ORDERS = 1 << 16;
+    private static final int MID = 10_000;
+
+    @Param({"20", "200"})
+    private int spreadTicks;
+
+    private Side[] sides;
+    private OrderType[] types;
+    private long[] prices;
+    private long[] quantities;
+    private long[] cancels;
+    private long fills;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(42);
+        sides = new Side[ORDERS];
+        types = new OrderType[ORDERS];
+        prices = new long[ORDERS];
+        quantities = new long[ORDERS];
+        cancels = new long[ORDERS];
+
+        for (int i = 0; i < ORDERS; i++) {
+            boolean buy = random.nextBoolean();
+            sides[i] = buy ? Side.BUY : Side.SELL;
+            types[i] = random.nextInt(10) == 0 ? OrderType.MARKET : OrderType.LIMIT;
+            int offset = random.nextInt(spreadTicks);
+            prices[i] = types[i] == OrderType.MARKET ? 0 : buy ? MID - spreadTicks / 2 + offset : MID + spreadTicks / 2 - offset;
+            quantities[i] = 1 + random.nextInt(100);
+            cancels[i] = i > 0 && random.nextInt(5) == 0 ? 1 + random.nextInt(i) : 0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public int submitAndCancel() {
+        OrderBook book = new OrderBook((taker, maker, price, quantity) -> fills++);
+        for (int i = 0; i < ORDERS; i++) {
+            book.submit(new Order(i + 1, 1, sides[i], types[i], prices[i], quantities[i]));
+            if (cancels[i] != 0) {
+                book.cancel(cancels[i]);
+            }
+        }
+        return book.restingOrders();
+    }
+}
@@ -0,0 +1,74 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.dto.ProfitAndLoss;
+import com.backendtrading212.repository.PositionRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.service.TradingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Run with -prof gc for allocation per request (gc.alloc.rate.norm); bytes on the wire are printed once per trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PnlSerializationBenchmark {
+
+    @Param({"map-json", "json", "cbor", "smile"})
+    private String format;
+
+    private ObjectWriter writer;
+    private Object payload;
+
+    @Setup(Level.Trial)
+    public void buildPayload() throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkDatabase.start()) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            long userId = BenchmarkDatabase.createUser(jdbc, "serializer");
+            BenchmarkDatabase.seedTransactions(jdbc, userId, 1000);
+            context.getBean(PositionRepository.class).rebuildPositions(userId);
+            context.getBean(TransactionRepository.class).rebuildLastTradePrices();
+
+            List<ProfitAndLoss> pnl = context.getBean(TradingService.class).getProfitAndLoss("serializer");
+            ObjectMapper mapper = switch (format) {
+                case "cbor" -> context.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+                case "smile" -> context.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper();
+                default -> context.getBean(ObjectMapper.class);
+            };
+            payload = format.equals("map-json") ? pnl.stream().map(PnlSerializationBenchmark::asMap).toList() : pnl;
+            writer = mapper.writer();
+            System.out.printf("%n%s: %d positions, %d bytes%n", format, pnl.size(), writer.writeValueAsBytes(payload).length);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return writer.writeValueAsBytes(payload);
+    }
+
+    private static Map<String, Object> asMap(ProfitAndLoss pnl) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("symbol", pnl.symbol());
+        map.put("totalBought", pnl.totalBought());
+        map.put("totalSold", pnl.totalSold());
+        map.put("remainingQty", pnl.remainingQty());
+        map.put("avgBuyPrice", pnl.avgBuyPrice());
+        map.put("currentPrice", pnl.currentPrice());
+        map.put("realizedPnL", pnl.realizedPnL());
+        map.put("unrealizedPnL", pnl.unrealizedPnL());
+        map.put("totalPnL", pnl.totalPnL());
+        return map;
+    }
+}
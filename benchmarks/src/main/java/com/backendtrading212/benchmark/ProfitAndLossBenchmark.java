@@ -0,0 +1,69 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.dto.ProfitAndLoss;
+import com.backendtrading212.model.Transaction;
+import com.backendtrading212.repository.PositionRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.service.TradingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProfitAndLossBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int transactions;
+
+    private ConfigurableApplicationContext context;
+    private TradingService tradingService;
+    private TransactionRepository transactionRepo;
+    private long userId;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = BenchmarkDatabase.start();
+        tradingService = context.getBean(TradingService.class);
+        transactionRepo = context.getBean(TransactionRepository.class);
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        userId = BenchmarkDatabase.createUser(jdbc, "trader");
+        BenchmarkDatabase.seedTransactions(jdbc, userId, transactions);
+        context.getBean(PositionRepository.class).rebuildPositions(userId);
+        transactionRepo.rebuildLastTradePrices();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ProfitAndLoss> positions() {
+        return tradingService.getProfitAndLoss("trader");
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal[]> historyScan() {
+        Map<String, BigDecimal[]> totals = new HashMap<>();
+        for (Transaction tx : transactionRepo.getTransactionsByUserId(userId)) {
+            BigDecimal[] t = totals.computeIfAbsent(tx.getCryptoSymbol(),
+                    s -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+            int offset = "BUY".equalsIgnoreCase(tx.getType()) ? 0 : 2;
+            t[offset] = t[offset].add(tx.getQuantity());
+            t[offset + 1] = t[offset + 1].add(tx.getQuantity().multiply(tx.getPrice()));
+        }
+        return totals;
+    }
+}
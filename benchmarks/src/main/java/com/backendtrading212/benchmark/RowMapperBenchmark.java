@@ -0,0 +1,73 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.model.Transaction;
+import com.backendtrading212.repository.RowMappers;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Scores are rows/s. Run with -prof gc for allocation per row (gc.alloc.rate.norm).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final String QUERY = "SELECT * FROM transactions WHERE user_id = ?";
+
+    private static final String INDEXED_QUERY = "SELECT " + RowMappers.TRANSACTION_COLUMNS + " FROM transactions WHERE user_id = ?";
+
+    private static final RowMapper<Transaction> BY_LABEL = (rs, rowNum) -> Transaction.builder()
+            .id(rs.getInt("id"))
+            .userId(rs.getInt("user_id"))
+            .cryptoSymbol(rs.getString("crypto_symbol"))
+            .quantity(rs.getBigDecimal("quantity"))
+            .price(rs.getBigDecimal("price"))
+            .type(rs.getString("type"))
+            .timestamp(rs.getTimestamp("timestamp"))
+            .build();
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbc;
+    private long userId;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        context = BenchmarkDatabase.start();
+        jdbc = context.getBean(JdbcTemplate.class);
+        userId = BenchmarkDatabase.createUser(jdbc, "mapper");
+        BenchmarkDatabase.seedTransactions(jdbc, userId, ROWS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Transaction> beanPropertyRowMapper() {
+        return jdbc.query(QUERY, new BeanPropertyRowMapper<>(Transaction.class), userId);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Transaction> handWrittenRowMapper() {
+        return jdbc.query(QUERY, BY_LABEL, userId);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Transaction> columnIndexRowMapper() {
+        return jdbc.query(INDEXED_QUERY, RowMappers.TRANSACTION, userId);
+    }
+}
@@ -0,0 +1,61 @@
+package com.backendtrading212.benchmark;
+
+import com.backendtrading212.service.TradingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SellBenchmark {
+
+    private static final BigDecimal LOT_SIZE = BigDecimal.ONE;
+
+    @Param({"1", "10", "100"})
+    private int lots;
+
+    private ConfigurableApplicationContext context;
+    private TradingService tradingService;
+    private JdbcTemplate jdbc;
+    private long userId;
+    private BigDecimal sellQuantity;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = BenchmarkDatabase.start();
+        tradingService = context.getBean(TradingService.class);
+        jdbc = context.getBean(JdbcTemplate.class);
+        userId = BenchmarkDatabase.createUser(jdbc, "seller");
+        sellQuantity = LOT_SIZE.multiply(BigDecimal.valueOf(lots)).subtract(new BigDecimal("0.5"));
+    }
+
+    @Setup(Level.Invocation)
+    public void seedLots() {
+        jdbc.update("DELETE FROM holdings WHERE user_id = ?", userId);
+
+        List<Object[]> rows = new ArrayList<>(lots);
+        for (int i = 0; i < lots; i++) {
+            rows.add(new Object[]{userId, "BTC", LOT_SIZE, BigDecimal.valueOf(100 + i).setScale(2)});
+        }
+        jdbc.batchUpdate("INSERT INTO holdings (user_id, crypto_symbol, quantity, price) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public void sellAcrossLots() {
+        tradingService.sell("seller", "BTC", BigDecimal.valueOf(150), sellQuantity);
+    }
+}
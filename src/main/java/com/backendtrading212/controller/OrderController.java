@@ -0,0 +1,34 @@
+package com.backendtrading212.controller;
+
+import com.backendtrading212.dto.OrderBookView;
+import com.backendtrading212.dto.OrderRequest;
+import com.backendtrading212.dto.OrderResult;
+import com.backendtrading212.matching.MatchingEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/orders")
+@CrossOrigin(origins = "http://localhost:3000")
+@ConditionalOnProperty(name = "trading.matching.enabled", havingValue = "true")
+public class OrderController {
+
+    @Autowired
+    private MatchingEngine matchingEngine;
+
+    @PostMapping
+    public OrderResult place(@RequestBody OrderRequest req) {
+        return matchingEngine.place(req);
+    }
+
+    @DeleteMapping("/{orderId}")
+    public OrderResult cancel(@PathVariable long orderId) {
+        return matchingEngine.cancel(orderId);
+    }
+
+    @GetMapping("/book/{symbol}")
+    public OrderBookView book(@PathVariable String symbol, @RequestParam(defaultValue = "10") int depth) {
+        return matchingEngine.book(symbol, depth);
+    }
+}
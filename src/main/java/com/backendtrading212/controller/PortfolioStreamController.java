@@ -0,0 +1,21 @@
+package com.backendtrading212.controller;
+
+import com.backendtrading212.stream.PortfolioStreamService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "http://localhost:3000")
+public class PortfolioStreamController {
+
+    @Autowired
+    private PortfolioStreamService portfolioStream;
+
+    @GetMapping(value = "/stream/{username}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable String username) {
+        return portfolioStream.subscribe(username);
+    }
+}
@@ -1,20 +1,39 @@
 package com.backendtrading212.controller;
 
+import com.backendtrading212.datasource.ReadRouting;
+import com.backendtrading212.dto.BatchTradeRequest;
+import com.backendtrading212.dto.PortfolioSnapshot;
+import com.backendtrading212.dto.ProfitAndLoss;
 import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.dto.TradeResult;
+import com.backendtrading212.dto.TransactionQuery;
+import com.backendtrading212.ledger.LedgerEngine;
+import com.backendtrading212.matching.MatchingEngine;
 import com.backendtrading212.model.Holding;
 import com.backendtrading212.model.Transaction;
-import com.backendtrading212.model.User;
 import com.backendtrading212.repository.HoldingRepository;
 import com.backendtrading212.repository.TransactionRepository;
 import com.backendtrading212.repository.UserRepository;
+import com.backendtrading212.service.BatchTradingService;
+import com.backendtrading212.service.PortfolioService;
 import com.backendtrading212.service.TradingService;
+import com.backendtrading212.stream.TradeCommittedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api")
@@ -24,6 +43,12 @@ public class TradingController {
     @Autowired
     private TradingService tradingService;
 
+    @Autowired
+    private BatchTradingService batchTradingService;
+
+    @Autowired
+    private PortfolioService portfolioService;
+
     @Autowired
     private UserRepository userRepo;
 
@@ -33,6 +58,24 @@ public class TradingController {
     @Autowired
     private HoldingRepository holdingRepo;
 
+    @Autowired(required = false)
+    private LedgerEngine ledger;
+
+    @Autowired(required = false)
+    private ReadRouting readRouting;
+
+    @Autowired(required = false)
+    private MatchingEngine matchingEngine;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Value("${trading.transactions.max-page-size:1000}")
+    private int maxPageSize;
+
     @PostMapping("/buy")
     public ResponseEntity<String> buy(@RequestBody TradeRequest req) {
             tradingService.buy(req.getUsername(), req.getSymbol(), req.getPrice(), req.getQuantity());
@@ -45,30 +88,109 @@ public class TradingController {
         return ResponseEntity.ok("Sold successfully");
     }
 
+    @PostMapping("/trades/batch")
+    public ResponseEntity<List<TradeResult>> batch(@RequestBody BatchTradeRequest req) {
+        List<TradeResult> results = batchTradingService.submit(req);
+        boolean allFilled = results.stream().allMatch(result -> result.getStatus() == TradeResult.Status.FILLED);
+
+        if (req.isAllOrNothing() && !allFilled) {
+            return ResponseEntity.badRequest().body(results);
+        }
+        return ResponseEntity.ok(results);
+    }
+
     @PostMapping("/reset/{username}")
     public ResponseEntity<String> reset(@PathVariable String username) {
-        userRepo.resetBalance(username);
+        if (ledger != null) {
+            ledger.reset(username);
+        } else {
+            Long userId = userRepo.findIdByUsername(username);
+            userRepo.resetBalance(userId);
+            // After the epoch bump, so a fill racing the reset cannot settle into the new account.
+            if (matchingEngine != null) {
+                matchingEngine.cancelAll(userId);
+            }
+            if (readRouting != null) {
+                readRouting.recordWrite(username);
+            }
+        }
+        events.publishEvent(TradeCommittedEvent.reset(username));
         return ResponseEntity.ok("Account reset");
     }
 
     @GetMapping("/balance/{username}")
     public BigDecimal balance(@PathVariable String username) {
-        return userRepo.findByUsername(username).getBalance();
+        return read(username, () -> userRepo.findBalanceById(userRepo.findIdByUsername(username)));
     }
 
     @GetMapping("/transactions/{username}")
-    public List<Transaction> transactions(@PathVariable String username) {
-        return transactionRepo.getTransactionsByUsername(username);
+    public ResponseEntity<List<Transaction>> transactions(@PathVariable String username,
+                                                          @RequestParam(required = false) String after,
+                                                          @RequestParam(defaultValue = "100") int limit,
+                                                          @RequestParam(required = false) String symbol,
+                                                          @RequestParam(required = false) String type,
+                                                          @RequestParam(required = false) Instant from,
+                                                          @RequestParam(required = false) Instant to) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        TransactionQuery query = transactionQuery(username, symbol, type, from, to).limit(pageSize).build().after(after);
+        List<Transaction> page = read(username, () -> transactionRepo.findTransactions(query));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == pageSize) {
+            Transaction last = page.get(page.size() - 1);
+            response.header("X-Next-Cursor", TransactionQuery.cursorOf(last.getTimestamp(), last.getId()));
+        }
+        return response.body(page);
+    }
+
+    @GetMapping(value = "/transactions/{username}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTransactions(@PathVariable String username,
+                                                                    @RequestParam(required = false) String symbol,
+                                                                    @RequestParam(required = false) String type,
+                                                                    @RequestParam(required = false) Instant from,
+                                                                    @RequestParam(required = false) Instant to) {
+        TransactionQuery query = transactionQuery(username, symbol, type, from, to).build();
+
+        StreamingResponseBody body = out -> read(username, () -> {
+            transactionRepo.streamTransactions(query, tx -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(tx));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return null;
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/holdings/{username}")
     public List<Holding> holdings(@PathVariable String username) {
-        User user = userRepo.findByUsername(username);
-        return holdingRepo.getHoldingsByUserId(user.getId());
+        return read(username, () -> holdingRepo.getHoldingsByUserId(userRepo.findIdByUsername(username)));
     }
 
     @GetMapping("/pnl/{username}")
-    public List<Map<String, Object>> getPnL(@PathVariable String username) {
-        return tradingService.getProfitAndLoss(username);
+    public List<ProfitAndLoss> getPnL(@PathVariable String username) {
+        return read(username, () -> tradingService.getProfitAndLoss(username));
+    }
+
+    @GetMapping("/portfolio/{username}")
+    public PortfolioSnapshot portfolio(@PathVariable String username) {
+        return portfolioService.snapshot(username);
+    }
+
+    private <T> T read(String username, Supplier<T> query) {
+        return readRouting == null ? query.get() : readRouting.read(username, query);
+    }
+
+    private TransactionQuery.TransactionQueryBuilder transactionQuery(String username, String symbol, String type,
+                                                                      Instant from, Instant to) {
+        return TransactionQuery.builder()
+                .userId(userRepo.findIdByUsername(username))
+                .symbol(symbol)
+                .type(type)
+                .from(from == null ? null : Timestamp.from(from))
+                .to(to == null ? null : Timestamp.from(to));
     }
 }
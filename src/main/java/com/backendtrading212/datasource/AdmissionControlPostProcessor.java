@@ -0,0 +1,34 @@
+package com.backendtrading212.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Component
+@ConditionalOnProperty(name = "trading.datasource.admission.enabled", havingValue = "true")
+public class AdmissionControlPostProcessor implements BeanPostProcessor {
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${trading.datasource.admission.permits:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int permits;
+
+    @Value("${trading.datasource.admission.timeout:30s}")
+    private Duration timeout;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof AdmissionControlDataSource)) {
+            return new AdmissionControlDataSource(dataSource, permits, timeout, meterRegistry.getObject());
+        }
+        return bean;
+    }
+}
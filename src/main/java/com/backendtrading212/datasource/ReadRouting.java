@@ -0,0 +1,47 @@
+package com.backendtrading212.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+public class ReadRouting {
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadRouting(Duration readYourWritesWindow) {
+        recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+    }
+
+    public void recordWrite(String username) {
+        if (username != null) {
+            recentWriters.put(username, Boolean.TRUE);
+        }
+    }
+
+    public <T> T read(String username, Supplier<T> query) {
+        if (mustReadPrimary(username)) {
+            return query.get();
+        }
+        return ReplicaRoutingDataSource.readOnly(query);
+    }
+
+    // For reads that are combined into one answer: the primary-or-replica decision is made once, and every read
+    // through the pin goes to the same source.
+    public ReplicaRoutingDataSource.Pin pin(String username) {
+        return new ReplicaRoutingDataSource.Pin(mustReadPrimary(username));
+    }
+
+    public <T> T read(ReplicaRoutingDataSource.Pin pin, Supplier<T> query) {
+        return ReplicaRoutingDataSource.readPinned(pin, query);
+    }
+
+    private boolean mustReadPrimary(String username) {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                || (username != null && recentWriters.getIfPresent(username) != null);
+    }
+}
@@ -0,0 +1,90 @@
+package com.backendtrading212.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "trading.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfiguration {
+
+    @Value("${trading.datasource.replicas.urls:}")
+    private List<String> replicaUrls;
+
+    @Value("${trading.datasource.replicas.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${trading.datasource.replicas.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${trading.datasource.replicas.pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${trading.datasource.replicas.connection-timeout:1s}")
+    private Duration replicaConnectionTimeout;
+
+    @Value("${trading.datasource.replicas.validation-timeout-seconds:1}")
+    private int validationTimeoutSeconds;
+
+    @Value("${trading.datasource.replicas.read-your-writes-window:5s}")
+    private Duration readYourWritesWindow;
+
+    private ReplicaRoutingDataSource routing;
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        primary.setMetricRegistry(meterRegistry);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) continue;
+            String name = "replica-" + replicas.size();
+            replicas.put(name, replica(name, url.trim(), properties.determineDriverClassName(), meterRegistry));
+        }
+
+        routing = new ReplicaRoutingDataSource(primary, replicas, validationTimeoutSeconds, meterRegistry);
+        return routing;
+    }
+
+    @Bean
+    public ReadRouting readRouting() {
+        return new ReadRouting(readYourWritesWindow);
+    }
+
+    @Scheduled(fixedDelayString = "${trading.datasource.replicas.health-interval-ms:5000}")
+    void checkReplicas() {
+        if (routing != null) {
+            routing.checkHealth();
+        }
+    }
+
+    private HikariDataSource replica(String name, String url, String driverClassName, MeterRegistry meterRegistry) {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName(name);
+        replica.setJdbcUrl(url);
+        replica.setDriverClassName(driverClassName);
+        replica.setUsername(replicaUsername);
+        replica.setPassword(replicaPassword);
+        replica.setMaximumPoolSize(replicaPoolSize);
+        replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+        replica.setInitializationFailTimeout(-1);
+        replica.setReadOnly(true);
+        replica.setMetricRegistry(meterRegistry);
+        return replica;
+    }
+}
@@ -0,0 +1,218 @@
+package com.backendtrading212.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final ThreadLocal<Object> ROUTE = new ThreadLocal<>();
+    private static final Object ANY_REPLICA = new Object();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final int validationTimeoutSeconds;
+
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+    private final Counter fallbackRoutes;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    int validationTimeoutSeconds, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+
+        primaryRoutes = routes(meterRegistry, "primary");
+        replicaRoutes = routes(meterRegistry, "replica");
+        fallbackRoutes = routes(meterRegistry, "fallback");
+        for (Replica replica : this.replicas) {
+            Gauge.builder("trading.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("Whether a read replica is currently accepting routed reads")
+                    .tag("pool", replica.name)
+                    .register(meterRegistry);
+        }
+    }
+
+    public static <T> T readOnly(Supplier<T> query) {
+        if (ROUTE.get() != null) {
+            return query.get();
+        }
+        return routed(ANY_REPLICA, query);
+    }
+
+    public static <T> T readPinned(Pin pin, Supplier<T> query) {
+        return routed(pin, query);
+    }
+
+    // False when the calling thread's reads may be served by a replica.
+    public static boolean readsPrimary() {
+        Object route = ROUTE.get();
+        return route == null || (route instanceof Pin pin && pin.primaryOnly);
+    }
+
+    private static <T> T routed(Object route, Supplier<T> query) {
+        Object previous = ROUTE.get();
+        ROUTE.set(route);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                ROUTE.remove();
+            } else {
+                ROUTE.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object route = ROUTE.get();
+        if (route instanceof Pin pin) {
+            return pinnedConnection(pin);
+        }
+        if (route == null || replicas.isEmpty()) {
+            primaryRoutes.increment();
+            return primary.getConnection();
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) continue;
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaRoutes.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                eject(replica, e);
+            }
+        }
+
+        fallbackRoutes.increment();
+        return primary.getConnection();
+    }
+
+    // The first connection of a pinned group picks its source; the rest reuse it and fail rather than fall over
+    // to another copy that may be at a different point in replication.
+    private Connection pinnedConnection(Pin pin) throws SQLException {
+        Replica replica;
+        synchronized (pin) {
+            if (!pin.chosen) {
+                pin.replica = pin.primaryOnly ? null : nextHealthyReplica();
+                pin.chosen = true;
+            }
+            replica = pin.replica;
+        }
+
+        if (replica == null) {
+            (pin.primaryOnly ? primaryRoutes : fallbackRoutes).increment();
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replica.dataSource.getConnection();
+            replicaRoutes.increment();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            eject(replica, e);
+            throw e;
+        }
+    }
+
+    private Replica nextHealthyReplica() {
+        if (replicas.isEmpty()) return null;
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) return replica;
+        }
+        return null;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryRoutes.increment();
+        return primary.getConnection(username, password);
+    }
+
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(validationTimeoutSeconds)) {
+                    eject(replica, null);
+                } else if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("Read replica {} is healthy again, resuming routed reads", replica.name);
+                }
+            } catch (SQLException | RuntimeException e) {
+                eject(replica, e);
+            }
+        }
+    }
+
+    public List<String> healthyReplicas() {
+        return replicas.stream().filter(replica -> replica.healthy).map(replica -> replica.name).toList();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void eject(Replica replica, Exception cause) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Ejecting read replica {}: {}", replica.name, cause == null ? "connection invalid" : cause.getMessage());
+        }
+    }
+
+    private static Counter routes(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("trading.datasource.routes")
+                .description("Connections handed out per route")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    // Ties a group of reads, possibly made on several threads, to a single data source.
+    public static final class Pin {
+        private final boolean primaryOnly;
+        private boolean chosen;
+        private Replica replica;
+
+        Pin(boolean primaryOnly) {
+            this.primaryOnly = primaryOnly;
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
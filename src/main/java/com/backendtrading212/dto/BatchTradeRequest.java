@@ -0,0 +1,21 @@
+package com.backendtrading212.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class BatchTradeRequest {
+    public enum Mode {ALL_OR_NOTHING, BEST_EFFORT}
+
+    private Mode mode;
+    private List<TradeRequest> trades;
+
+    public boolean isAllOrNothing() {
+        return mode != Mode.BEST_EFFORT;
+    }
+}
@@ -0,0 +1,20 @@
+package com.backendtrading212.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class OrderBookView {
+    public record Level(BigDecimal price, BigDecimal quantity, int orders) {
+    }
+
+    private String symbol;
+    private List<Level> bids;
+    private List<Level> asks;
+}
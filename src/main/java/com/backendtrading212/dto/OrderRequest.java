@@ -0,0 +1,21 @@
+package com.backendtrading212.dto;
+
+import com.backendtrading212.matching.OrderType;
+import com.backendtrading212.matching.Side;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@Builder
+public class OrderRequest {
+    private String username;
+    private String symbol;
+    private Side side;
+    private OrderType type;
+    private BigDecimal price;
+    private BigDecimal quantity;
+}
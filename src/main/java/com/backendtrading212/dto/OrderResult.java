@@ -0,0 +1,31 @@
+package com.backendtrading212.dto;
+
+import com.backendtrading212.matching.OrderType;
+import com.backendtrading212.matching.Side;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class OrderResult {
+    public enum Status {NEW, PARTIALLY_FILLED, FILLED, CANCELLED}
+
+    public record Fill(long makerOrderId, BigDecimal price, BigDecimal quantity, boolean settled) {
+    }
+
+    private long orderId;
+    private String symbol;
+    private Side side;
+    private OrderType type;
+    private Status status;
+    private BigDecimal price;
+    private BigDecimal quantity;
+    private BigDecimal filledQuantity;
+    private BigDecimal remainingQuantity;
+    private List<Fill> fills;
+}
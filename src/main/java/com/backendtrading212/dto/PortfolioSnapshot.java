@@ -0,0 +1,13 @@
+package com.backendtrading212.dto;
+
+import com.backendtrading212.model.Holding;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record PortfolioSnapshot(String username,
+                               BigDecimal balance,
+                               long version,
+                               List<Holding> holdings,
+                               List<ProfitAndLoss> pnl) {
+}
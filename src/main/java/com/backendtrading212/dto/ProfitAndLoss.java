@@ -0,0 +1,14 @@
+package com.backendtrading212.dto;
+
+import java.math.BigDecimal;
+
+public record ProfitAndLoss(String symbol,
+                            BigDecimal totalBought,
+                            BigDecimal totalSold,
+                            BigDecimal remainingQty,
+                            BigDecimal avgBuyPrice,
+                            BigDecimal currentPrice,
+                            BigDecimal realizedPnL,
+                            BigDecimal unrealizedPnL,
+                            BigDecimal totalPnL) {
+}
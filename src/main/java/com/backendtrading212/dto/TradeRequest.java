@@ -14,5 +14,6 @@ public class TradeRequest {
     private String symbol;
     private BigDecimal price;
     private BigDecimal quantity;
+    private String side;
 }
 
@@ -0,0 +1,16 @@
+package com.backendtrading212.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class TradeResult {
+    public enum Status {FILLED, REJECTED, ABORTED}
+
+    private int index;
+    private Status status;
+    private String message;
+}
@@ -0,0 +1,37 @@
+package com.backendtrading212.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.sql.Timestamp;
+
+@Getter
+@Setter
+@Builder
+public class TransactionQuery {
+    private Long userId;
+    private String symbol;
+    private String type;
+    private Timestamp from;
+    private Timestamp to;
+    private Timestamp afterTimestamp;
+    private Integer afterId;
+    private int limit;
+
+    public static String cursorOf(Timestamp timestamp, int id) {
+        return timestamp.getTime() + "," + id;
+    }
+
+    public TransactionQuery after(String cursor) {
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = cursor.split(",", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Cursor must be <timestamp,id>: " + cursor);
+            }
+            afterTimestamp = new Timestamp(Long.parseLong(parts[0].trim()));
+            afterId = Integer.parseInt(parts[1].trim());
+        }
+        return this;
+    }
+}
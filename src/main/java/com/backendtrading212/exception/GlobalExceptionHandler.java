@@ -1,5 +1,7 @@
 package com.backendtrading212.exception;
 
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,6 +23,26 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body("Invalid trade: " + ex.getMessage());
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest().body("Invalid request: " + ex.getMessage());
+    }
+
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<String> handleConflict(ConcurrencyFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Concurrent update: " + ex.getMessage());
+    }
+
+    @ExceptionHandler(PortfolioUnavailableException.class)
+    public ResponseEntity<String> handleUnavailable(PortfolioUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Portfolio unavailable: " + ex.getMessage());
+    }
+
+    @ExceptionHandler(LedgerUnavailableException.class)
+    public ResponseEntity<String> handleLedgerUnavailable(LedgerUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Ledger unavailable: " + ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleAll(Exception ex) {
         return ResponseEntity.internalServerError().body("Unexpected error: " + ex.getMessage());
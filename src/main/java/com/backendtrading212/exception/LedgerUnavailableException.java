@@ -0,0 +1,7 @@
+package com.backendtrading212.exception;
+
+public class LedgerUnavailableException extends RuntimeException {
+    public LedgerUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.backendtrading212.exception;
+
+public class PortfolioUnavailableException extends RuntimeException {
+    public PortfolioUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
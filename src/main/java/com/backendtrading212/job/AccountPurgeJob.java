@@ -0,0 +1,125 @@
+package com.backendtrading212.job;
+
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.PositionRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(name = "trading.purge.enabled", havingValue = "true", matchIfMissing = true)
+public class AccountPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountPurgeJob.class);
+
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private HoldingRepository holdingRepo;
+    @Autowired
+    private TransactionRepository transactionRepo;
+    @Autowired
+    private PositionRepository positionRepo;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.purge.interval-ms:10000}")
+    private long intervalMs;
+
+    @Value("${trading.purge.accounts-per-run:50}")
+    private int accountsPerRun;
+
+    @Value("${trading.purge.batch-size:500}")
+    private int batchSize;
+
+    @Value("${trading.purge.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${trading.purge.batch-pause-ms:50}")
+    private long batchPauseMs;
+
+    private Counter purgedHoldings;
+    private Counter purgedTransactions;
+    private Counter purgedPositions;
+    private ScheduledExecutorService purger;
+
+    // Runs on its own thread rather than the shared scheduler, which the pauses between batches would otherwise hold.
+    @PostConstruct
+    void start() {
+        purgedHoldings = meterRegistry.counter("trading.purge.rows", "table", "holdings");
+        purgedTransactions = meterRegistry.counter("trading.purge.rows", "table", "transactions");
+        purgedPositions = meterRegistry.counter("trading.purge.rows", "table", "positions");
+
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "account-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::run, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        purger.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            purge();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Account purge failed", e);
+        }
+    }
+
+    // Every delete is its own short autocommit statement capped at batch-size rows, so a purge never
+    // holds locks long enough to stall trades; accounts left unfinished are picked up on the next run.
+    public void purge() throws InterruptedException {
+        int batches = 0;
+        int accounts = 0;
+
+        for (Map<String, Object> row : userRepo.findUnpurgedEpochs(accountsPerRun)) {
+            Long userId = ((Number) row.get("id")).longValue();
+            int epoch = ((Number) row.get("epoch")).intValue();
+
+            int deleted;
+            do {
+                if (batches++ >= maxBatchesPerRun) {
+                    log.debug("Account purge paused after {} batches", maxBatchesPerRun);
+                    return;
+                }
+                int holdings = holdingRepo.purgeStaleHoldings(userId, epoch, batchSize);
+                int transactions = transactionRepo.purgeStaleTransactions(userId, epoch, batchSize);
+                purgedHoldings.increment(holdings);
+                purgedTransactions.increment(transactions);
+                deleted = Math.max(holdings, transactions);
+                if (deleted > 0 && batchPauseMs > 0) {
+                    Thread.sleep(batchPauseMs);
+                }
+            } while (deleted >= batchSize);
+
+            purgedPositions.increment(positionRepo.purgeStalePositions(userId, epoch));
+            userRepo.markPurged(userId, epoch);
+            accounts++;
+        }
+
+        if (accounts > 0) {
+            log.info("Purged pre-reset rows for {} accounts", accounts);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.backendtrading212.job;
+
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "trading.compaction.enabled", havingValue = "true")
+public class LotCompactionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(LotCompactionJob.class);
+
+    @Autowired
+    private HoldingRepository holdingRepo;
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private TransactionTemplate txTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.compaction.batch-size:100}")
+    private int accountsPerRun;
+
+    @Value("${trading.compaction.dust-threshold:0}")
+    private BigDecimal dustThreshold;
+
+    private Counter reclaimedRows;
+    private long lastUserId;
+
+    @PostConstruct
+    void registerMetrics() {
+        reclaimedRows = meterRegistry.counter("trading.compaction.rows.reclaimed");
+    }
+
+    // Same-price lots are already merged by uq_holdings_lot, so only dust is left to collapse. Each run covers the
+    // next range of accounts and wraps around after the last one.
+    @Scheduled(fixedDelayString = "${trading.compaction.interval-ms:60000}")
+    public synchronized void compact() {
+        if (dustThreshold.signum() <= 0) return;
+
+        List<Long> userIds = userRepo.getUserIdsAfter(lastUserId, accountsPerRun);
+        if (userIds.isEmpty()) {
+            lastUserId = 0;
+            return;
+        }
+
+        long reclaimed = 0;
+        for (Holding group : holdingRepo.findDustLotGroups(userIds.get(0), userIds.get(userIds.size() - 1), dustThreshold)) {
+            reclaimed += txTemplate.execute(status -> collapseDustLots(group));
+        }
+        lastUserId = userIds.size() < accountsPerRun ? 0 : userIds.get(userIds.size() - 1);
+
+        if (reclaimed > 0) {
+            reclaimedRows.increment(reclaimed);
+            log.info("Lot compaction reclaimed {} holding rows", reclaimed);
+        }
+    }
+
+    // Sells plan against unlocked lot reads and are only guarded by the account version, so every rewrite of a
+    // user's lots bumps it first. Locking the user row before the lots keeps the lock order of a sell.
+    private int collapseDustLots(Holding group) {
+        Long userId = (long) group.getUserId();
+        userRepo.bumpVersion(userId);
+        List<Holding> dust = holdingRepo.lockDustLots(userId, group.getCryptoSymbol(), dustThreshold);
+        if (dust.size() < 2) return 0;
+
+        BigDecimal totalQty = BigDecimal.ZERO;
+        BigDecimal totalCost = BigDecimal.ZERO;
+        for (Holding lot : dust) {
+            totalQty = totalQty.add(lot.getQuantity());
+            totalCost = totalCost.add(lot.getQuantity().multiply(lot.getPrice()));
+        }
+        if (totalQty.signum() == 0) return 0;
+
+        BigDecimal avgPrice = totalCost.divide(totalQty, 2, RoundingMode.HALF_UP);
+        holdingRepo.deleteHoldingsByIds(dust.stream().map(lot -> (long) lot.getId()).toList());
+        holdingRepo.upsertHolding(userId, group.getCryptoSymbol(), totalQty, avgPrice);
+        return dust.size() - 1;
+    }
+}
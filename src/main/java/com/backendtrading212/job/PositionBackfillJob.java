@@ -0,0 +1,54 @@
+package com.backendtrading212.job;
+
+import com.backendtrading212.repository.PositionRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "trading.positions.backfill-on-startup", havingValue = "true")
+public class PositionBackfillJob implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(PositionBackfillJob.class);
+
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private PositionRepository positionRepo;
+    @Autowired
+    private TransactionRepository transactionRepo;
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Value("${trading.positions.backfill-batch-size:500}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long rebuilt = 0;
+        Long lastUserId = 0L;
+
+        List<Long> userIds;
+        while (!(userIds = userRepo.getUserIdsAfter(lastUserId, batchSize)).isEmpty()) {
+            for (Long userId : userIds) {
+                txTemplate.executeWithoutResult(status -> positionRepo.rebuildPositions(userId));
+                rebuilt++;
+            }
+            lastUserId = userIds.get(userIds.size() - 1);
+        }
+
+        transactionRepo.rebuildLastTradePrices();
+
+        log.info("Rebuilt positions for {} users and last trade prices from transactions", rebuilt);
+    }
+}
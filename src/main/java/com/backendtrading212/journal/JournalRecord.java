@@ -0,0 +1,7 @@
+package com.backendtrading212.journal;
+
+public record JournalRecord(long sequence, Type type, long userId, String symbol,
+                            long priceCents, long quantityUnits, long timestamp) {
+
+    public enum Type {BUY, SELL, RESET}
+}
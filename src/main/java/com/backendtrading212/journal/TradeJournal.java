@@ -0,0 +1,316 @@
+package com.backendtrading212.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class TradeJournal implements AutoCloseable {
+
+    public static final int RECORD_SIZE = 64;
+    public static final int MAX_SYMBOL_LENGTH = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(TradeJournal.class);
+    private static final String SUFFIX = ".journal";
+
+    private static final int TYPE_OFFSET = 8;
+    private static final int SYMBOL_LENGTH_OFFSET = 9;
+    private static final int SYMBOL_OFFSET = 10;
+    private static final int USER_OFFSET = 20;
+    private static final int PRICE_OFFSET = 28;
+    private static final int QUANTITY_OFFSET = 36;
+    private static final int TIMESTAMP_OFFSET = 44;
+    private static final int CRC_OFFSET = 52;
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final int fsyncBatch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long lastSequence;
+    private int unsynced;
+
+    private TradeJournal(Path dir, int segmentRecords, int fsyncBatch, long fsyncIntervalMs) {
+        this.dir = dir;
+        this.segmentRecords = segmentRecords;
+        this.fsyncBatch = fsyncBatch;
+        this.flusher = fsyncIntervalMs > 0
+                ? Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "journal-fsync");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    public static TradeJournal open(Path dir, int segmentRecords, int fsyncBatch, long fsyncIntervalMs) throws IOException {
+        Files.createDirectories(dir);
+        TradeJournal journal = new TradeJournal(dir, segmentRecords, fsyncBatch, fsyncIntervalMs);
+        journal.recover();
+        if (journal.flusher != null) {
+            journal.flusher.scheduleWithFixedDelay(journal::force, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        return journal;
+    }
+
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public JournalRecord append(JournalRecord.Type type, long userId, String symbol, long priceCents, long quantityUnits) {
+        byte[] symbolBytes = symbol == null ? new byte[0] : symbol.getBytes(StandardCharsets.US_ASCII);
+        if (symbolBytes.length > MAX_SYMBOL_LENGTH) {
+            throw new IllegalArgumentException("Symbol longer than " + MAX_SYMBOL_LENGTH + " characters: " + symbol);
+        }
+
+        MappedByteBuffer toSync = null;
+        long sequence;
+        long timestamp = System.currentTimeMillis();
+        lock.lock();
+        try {
+            if (!buffer.hasRemaining()) {
+                rollSegment();
+            }
+
+            sequence = lastSequence + 1;
+            int start = buffer.position();
+            buffer.putLong(start, sequence);
+            buffer.put(start + TYPE_OFFSET, (byte) (type.ordinal() + 1));
+            buffer.put(start + SYMBOL_LENGTH_OFFSET, (byte) symbolBytes.length);
+            for (int i = 0; i < MAX_SYMBOL_LENGTH; i++) {
+                buffer.put(start + SYMBOL_OFFSET + i, i < symbolBytes.length ? symbolBytes[i] : 0);
+            }
+            buffer.putLong(start + USER_OFFSET, userId);
+            buffer.putLong(start + PRICE_OFFSET, priceCents);
+            buffer.putLong(start + QUANTITY_OFFSET, quantityUnits);
+            buffer.putLong(start + TIMESTAMP_OFFSET, timestamp);
+            buffer.putInt(start + CRC_OFFSET, checksum(buffer, start));
+            buffer.position(start + RECORD_SIZE);
+
+            lastSequence = sequence;
+            if (++unsynced >= fsyncBatch) {
+                unsynced = 0;
+                toSync = buffer;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (toSync != null) {
+            toSync.force();
+        }
+        return new JournalRecord(sequence, type, userId, symbol, priceCents, quantityUnits, timestamp);
+    }
+
+    public void force() {
+        MappedByteBuffer toSync;
+        lock.lock();
+        try {
+            if (unsynced == 0 || buffer == null) return;
+            unsynced = 0;
+            toSync = buffer;
+        } finally {
+            lock.unlock();
+        }
+        toSync.force();
+    }
+
+    public void replay(long afterSequence, Consumer<JournalRecord> consumer) {
+        List<Map.Entry<Long, Path>> snapshot;
+        long upTo;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(segments.entrySet());
+            upTo = lastSequence;
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            long first = snapshot.get(i).getKey();
+            long next = i + 1 < snapshot.size() ? snapshot.get(i + 1).getKey() : upTo + 1;
+            if (next <= afterSequence + 1) continue;
+
+            try (FileChannel segment = FileChannel.open(snapshot.get(i).getValue(), StandardOpenOption.READ)) {
+                ByteBuffer data = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+                for (long seq = Math.max(first, afterSequence + 1); seq < next; seq++) {
+                    consumer.accept(read(data, (int) (seq - first) * RECORD_SIZE));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public void truncateBefore(long sequence) {
+        lock.lock();
+        try {
+            while (segments.size() > 1) {
+                Map.Entry<Long, Path> oldest = segments.firstEntry();
+                Long nextFirst = segments.higherKey(oldest.getKey());
+                if (nextFirst - 1 > sequence) break;
+
+                Files.deleteIfExists(oldest.getValue());
+                segments.pollFirstEntry();
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete journal segment", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        lock.lock();
+        try {
+            if (buffer != null) {
+                buffer.force();
+                buffer = null;
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .forEach(file -> segments.put(firstSequenceOf(file), file));
+        }
+
+        if (segments.isEmpty()) {
+            mapSegment(1);
+            return;
+        }
+
+        long expected = segments.firstKey();
+        Long tailSegment = null;
+        int tailSlot = 0;
+
+        for (Map.Entry<Long, Path> entry : new ArrayList<>(segments.entrySet())) {
+            if (tailSegment != null || entry.getKey() != expected) {
+                log.warn("Discarding journal segment {} after the recovered tail", entry.getValue());
+                Files.delete(entry.getValue());
+                segments.remove(entry.getKey());
+                continue;
+            }
+
+            try (FileChannel segment = FileChannel.open(entry.getValue(), StandardOpenOption.READ)) {
+                ByteBuffer data = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+                int slot = 0;
+                while ((slot + 1) * RECORD_SIZE <= data.capacity() && slot < segmentRecords) {
+                    JournalRecord record = read(data, slot * RECORD_SIZE);
+                    if (record == null || record.sequence() != expected) break;
+                    expected++;
+                    slot++;
+                }
+                if (slot < segmentRecords) {
+                    tailSegment = entry.getKey();
+                    tailSlot = slot;
+                }
+            }
+        }
+
+        lastSequence = expected - 1;
+        if (tailSegment == null) {
+            mapSegment(expected);
+        } else {
+            openSegment(tailSegment, segments.get(tailSegment));
+            buffer.position(tailSlot * RECORD_SIZE);
+            for (int i = 0; i < RECORD_SIZE; i++) {
+                buffer.put(tailSlot * RECORD_SIZE + i, (byte) 0);
+            }
+            buffer.force();
+        }
+        log.info("Recovered trade journal at sequence {}", lastSequence);
+    }
+
+    private void rollSegment() {
+        try {
+            buffer.force();
+            channel.close();
+            mapSegment(lastSequence + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void mapSegment(long firstSequence) throws IOException {
+        Path file = dir.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        segments.put(firstSequence, file);
+        openSegment(firstSequence, file);
+    }
+
+    private void openSegment(long firstSequence, Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+    }
+
+    private static JournalRecord read(ByteBuffer data, int start) {
+        if (data.getInt(start + CRC_OFFSET) != checksum(data, start)) return null;
+
+        int typeCode = data.get(start + TYPE_OFFSET);
+        int symbolLength = data.get(start + SYMBOL_LENGTH_OFFSET);
+        if (typeCode < 1 || typeCode > JournalRecord.Type.values().length
+                || symbolLength < 0 || symbolLength > MAX_SYMBOL_LENGTH) {
+            return null;
+        }
+
+        byte[] symbol = new byte[symbolLength];
+        data.get(start + SYMBOL_OFFSET, symbol);
+        return new JournalRecord(
+                data.getLong(start),
+                JournalRecord.Type.values()[typeCode - 1],
+                data.getLong(start + USER_OFFSET),
+                symbolLength == 0 ? null : new String(symbol, StandardCharsets.US_ASCII),
+                data.getLong(start + PRICE_OFFSET),
+                data.getLong(start + QUANTITY_OFFSET),
+                data.getLong(start + TIMESTAMP_OFFSET));
+    }
+
+    private static int checksum(ByteBuffer data, int start) {
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(start, CRC_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,88 @@
+package com.backendtrading212.ledger;
+
+import com.backendtrading212.model.Holding;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+class LedgerAccount {
+
+    private final Long userId;
+    private BigDecimal balance;
+    private final Map<String, TreeMap<BigDecimal, BigDecimal>> lots = new HashMap<>();
+
+    LedgerAccount(Long userId, BigDecimal balance, List<Holding> holdings) {
+        this.userId = userId;
+        this.balance = balance;
+        for (Holding holding : holdings) {
+            addLot(holding.getCryptoSymbol(), holding.getPrice(), holding.getQuantity());
+        }
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    BigDecimal getBalance() {
+        return balance;
+    }
+
+    Map<String, TreeMap<BigDecimal, BigDecimal>> lots() {
+        return lots;
+    }
+
+    LedgerAccount copy() {
+        LedgerAccount copy = new LedgerAccount(userId, balance, List.of());
+        lots.forEach((symbol, symbolLots) -> copy.lots.put(symbol, new TreeMap<>(symbolLots)));
+        return copy;
+    }
+
+    void debit(BigDecimal amount) {
+        balance = balance.subtract(amount);
+    }
+
+    void credit(BigDecimal amount) {
+        balance = balance.add(amount);
+    }
+
+    void addLot(String symbol, BigDecimal price, BigDecimal quantity) {
+        BigDecimal key = price == null ? BigDecimal.ZERO : price;
+        lots.computeIfAbsent(symbol, s -> new TreeMap<>()).merge(key, quantity, BigDecimal::add);
+    }
+
+    BigDecimal quantityOf(String symbol) {
+        TreeMap<BigDecimal, BigDecimal> symbolLots = lots.get(symbol);
+        if (symbolLots == null) return BigDecimal.ZERO;
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal qty : symbolLots.values()) {
+            total = total.add(qty);
+        }
+        return total;
+    }
+
+    void consumeLowestPriced(String symbol, BigDecimal quantity) {
+        TreeMap<BigDecimal, BigDecimal> symbolLots = lots.get(symbol);
+        BigDecimal remaining = quantity;
+
+        while (remaining.compareTo(BigDecimal.ZERO) > 0) {
+            Map.Entry<BigDecimal, BigDecimal> lowest = symbolLots.firstEntry();
+            BigDecimal sellQty = remaining.min(lowest.getValue());
+            BigDecimal newQty = lowest.getValue().subtract(sellQty);
+
+            if (newQty.compareTo(BigDecimal.ZERO) == 0) {
+                symbolLots.pollFirstEntry();
+            } else {
+                symbolLots.put(lowest.getKey(), newQty);
+            }
+            remaining = remaining.subtract(sellQty);
+        }
+
+        if (symbolLots.isEmpty()) {
+            lots.remove(symbol);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.backendtrading212.ledger;
+
+import com.backendtrading212.exception.InsufficientBalanceException;
+import com.backendtrading212.exception.InsufficientHoldingsException;
+import com.backendtrading212.exception.InvalidTradeException;
+import com.backendtrading212.exception.LedgerUnavailableException;
+import com.backendtrading212.journal.JournalRecord;
+import com.backendtrading212.journal.TradeJournal;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.model.FixedPoint;
+import com.backendtrading212.model.User;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.LedgerDeadLetterRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import com.backendtrading212.service.SellPlan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+
+@Component
+@ConditionalOnProperty(name = "trading.ledger.enabled", havingValue = "true")
+public class LedgerEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerEngine.class);
+
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private HoldingRepository holdingRepo;
+    @Autowired
+    private TransactionRepository transactionRepo;
+    @Autowired
+    private TransactionTemplate txTemplate;
+    @Autowired
+    private LedgerDeadLetterRepository deadLetters;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.ledger.partitions:4}")
+    private int partitionCount;
+
+    @Value("${trading.ledger.persist-backlog:10000}")
+    private int persistBacklog;
+
+    @Value("${trading.ledger.write.max-attempts:6}")
+    private int maxWriteAttempts;
+
+    @Value("${trading.journal.enabled:false}")
+    private boolean journalEnabled;
+
+    @Value("${trading.journal.dir:data/journal}")
+    private String journalDir;
+
+    @Value("${trading.journal.segment-records:1048576}")
+    private int segmentRecords;
+
+    @Value("${trading.journal.fsync-batch:64}")
+    private int fsyncBatch;
+
+    @Value("${trading.journal.fsync-interval-ms:10}")
+    private long fsyncIntervalMs;
+
+    private LedgerPartition[] partitions;
+    private TradeJournal journal;
+    private final ConcurrentSkipListSet<Long> unfed = new ConcurrentSkipListSet<>();
+    private Counter writeFailures;
+
+    @PostConstruct
+    void start() throws IOException {
+        writeFailures = meterRegistry.counter("trading.ledger.write.failures");
+        partitions = new LedgerPartition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new LedgerPartition(i, persistBacklog);
+        }
+
+        if (journalEnabled) {
+            journal = TradeJournal.open(Path.of(journalDir), segmentRecords, fsyncBatch, fsyncIntervalMs);
+            recover();
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        if (journal != null) {
+            snapshot();
+        }
+        for (LedgerPartition partition : partitions) {
+            partition.shutdown();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    public void buy(String username, String symbol, BigDecimal price, BigDecimal quantity) {
+        checkJournalRange(quantity);
+        BigDecimal tradePrice = journal != null ? price.setScale(FixedPoint.PRICE_SCALE) : price;
+        BigDecimal tradeQuantity = journal != null ? quantity.setScale(FixedPoint.QUANTITY_SCALE) : quantity;
+        BigDecimal amount = FixedPoint.amount(price, quantity, RoundingMode.HALF_UP);
+
+        LedgerPartition partition = partitionFor(username);
+        partition.execute(() -> {
+            admit(partition);
+            LedgerAccount account = account(partition, username);
+            BigDecimal cost = amount;
+
+            if (account.getBalance().compareTo(cost) < 0) {
+                throw new InsufficientBalanceException("Needed: $" + cost + ", Available: $" + account.getBalance());
+            }
+
+            Long userId = account.getUserId();
+            if (journal != null) {
+                JournalRecord record = journal.append(JournalRecord.Type.BUY, userId, symbol, FixedPoint.cents(price), FixedPoint.units(quantity));
+                account.debit(cost);
+                account.addLot(symbol, tradePrice, tradeQuantity);
+                feedLater(partition, username, record);
+                return null;
+            }
+
+            account.debit(cost);
+            account.addLot(symbol, price, quantity);
+
+            partition.persist(() -> write(partition, "BUY", username, symbol, price, quantity, () -> {
+                userRepo.adjustBalance(userId, cost.negate());
+                holdingRepo.upsertHolding(userId, symbol, quantity, price);
+                transactionRepo.insertTransaction(userId, symbol, quantity, price, "BUY");
+            }));
+            return null;
+        });
+    }
+
+    public void sell(String username, String symbol, BigDecimal price, BigDecimal quantity) {
+        checkJournalRange(quantity);
+        BigDecimal tradePrice = journal != null ? price.setScale(FixedPoint.PRICE_SCALE) : price;
+        BigDecimal tradeQuantity = journal != null ? quantity.setScale(FixedPoint.QUANTITY_SCALE) : quantity;
+        BigDecimal amount = FixedPoint.amount(price, quantity, RoundingMode.HALF_UP);
+
+        LedgerPartition partition = partitionFor(username);
+        partition.execute(() -> {
+            admit(partition);
+            LedgerAccount account = account(partition, username);
+            BigDecimal available = account.quantityOf(symbol);
+
+            if (available.compareTo(tradeQuantity) < 0) {
+                throw new InsufficientHoldingsException("Needed: " + quantity + " " + symbol + ", Available: " + available);
+            }
+
+            Long userId = account.getUserId();
+            BigDecimal proceeds = amount;
+            if (journal != null) {
+                JournalRecord record = journal.append(JournalRecord.Type.SELL, userId, symbol, FixedPoint.cents(price), FixedPoint.units(quantity));
+                account.consumeLowestPriced(symbol, tradeQuantity);
+                account.credit(proceeds);
+                feedLater(partition, username, record);
+                return null;
+            }
+
+            account.consumeLowestPriced(symbol, quantity);
+            account.credit(proceeds);
+
+            partition.persist(() -> write(partition, "SELL", username, symbol, price, quantity, () -> {
+                consumeHoldings(userId, symbol, price, quantity);
+                userRepo.adjustBalance(userId, proceeds);
+            }));
+            return null;
+        });
+    }
+
+    public void reset(String username) {
+        LedgerPartition partition = partitionFor(username);
+        partition.execute(() -> {
+            admit(partition);
+            partition.accounts().remove(username);
+            if (journal != null) {
+                JournalRecord record = journal.append(JournalRecord.Type.RESET, userRepo.findIdByUsername(username), null, 0, 0);
+                feedLater(partition, username, record);
+                return null;
+            }
+
+            partition.persist(() -> write(partition, "RESET", username, null, null, null, () -> userRepo.resetBalance(userRepo.findIdByUsername(username))));
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${trading.journal.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (journal == null) return;
+
+        CountDownLatch paused = new CountDownLatch(partitions.length);
+        CountDownLatch resume = new CountDownLatch(1);
+        for (LedgerPartition partition : partitions) {
+            partition.submit(() -> {
+                paused.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        long sequence;
+        Map<String, LedgerAccount> accounts = new LinkedHashMap<>();
+        try {
+            paused.await();
+            sequence = journal.lastSequence();
+            for (LedgerPartition partition : partitions) {
+                partition.accounts().forEach((username, account) -> accounts.put(username, account.copy()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            resume.countDown();
+        }
+
+        try {
+            LedgerSnapshots.write(Path.of(journalDir), new LedgerSnapshots.Snapshot(sequence, accounts));
+            journal.truncateBefore(Math.min(sequence, fedThrough()));
+            log.info("Ledger snapshot written at journal sequence {} with {} accounts", sequence, accounts.size());
+        } catch (IOException e) {
+            log.error("Ledger snapshot at journal sequence {} failed", sequence, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        journal.replay(0, record -> txTemplate.executeWithoutResult(status -> feed(record)));
+
+        LedgerSnapshots.Snapshot snapshot = LedgerSnapshots.readLatest(Path.of(journalDir));
+        if (snapshot == null) return;
+
+        Map<Long, LedgerAccount> byUserId = new HashMap<>();
+        Map<Long, String> usernames = new HashMap<>();
+        snapshot.accounts().forEach((username, account) -> {
+            partitionFor(username).accounts().put(username, account);
+            byUserId.put(account.getUserId(), account);
+            usernames.put(account.getUserId(), username);
+        });
+
+        journal.replay(snapshot.sequence(), record -> {
+            LedgerAccount account = byUserId.get(record.userId());
+            if (account == null) return;
+
+            if (record.type() == JournalRecord.Type.RESET) {
+                byUserId.remove(record.userId());
+                partitionFor(usernames.get(record.userId())).accounts().remove(usernames.get(record.userId()));
+                return;
+            }
+
+            BigDecimal price = FixedPoint.ofCents(record.priceCents());
+            BigDecimal quantity = FixedPoint.ofUnits(record.quantityUnits());
+            BigDecimal amount = FixedPoint.amount(price, quantity, RoundingMode.HALF_UP);
+            if (record.type() == JournalRecord.Type.BUY) {
+                account.debit(amount);
+                account.addLot(record.symbol(), price, quantity);
+            } else {
+                account.consumeLowestPriced(record.symbol(), quantity);
+                account.credit(amount);
+            }
+        });
+        log.info("Ledger restored {} accounts from snapshot {} and journal tail to {}",
+                byUserId.size(), snapshot.sequence(), journal.lastSequence());
+    }
+
+    private void feed(JournalRecord record) {
+        Long userId = record.userId();
+        long sequence = record.sequence();
+        BigDecimal price = FixedPoint.ofCents(record.priceCents());
+        BigDecimal quantity = FixedPoint.ofUnits(record.quantityUnits());
+        BigDecimal amount = FixedPoint.amount(price, quantity, RoundingMode.HALF_UP);
+
+        switch (record.type()) {
+            case BUY -> {
+                if (userRepo.advanceJournal(userId, amount.negate(), sequence)) {
+                    holdingRepo.upsertHolding(userId, record.symbol(), quantity, price);
+                    transactionRepo.insertTransaction(userId, record.symbol(), quantity, price, "BUY");
+                }
+            }
+            case SELL -> {
+                if (userRepo.advanceJournal(userId, amount, sequence)) {
+                    consumeHoldings(userId, record.symbol(), price, quantity);
+                }
+            }
+            case RESET -> {
+                if (userRepo.advanceJournal(userId, BigDecimal.ZERO, sequence)) {
+                    userRepo.resetBalance(userId);
+                }
+            }
+        }
+    }
+
+    private void feedLater(LedgerPartition partition, String username, JournalRecord record) {
+        long sequence = record.sequence();
+        unfed.add(sequence);
+        partition.persist(() -> {
+            boolean recorded = true;
+            try {
+                persist("Feeding journal record " + sequence, username, () -> feed(record));
+            } catch (RuntimeException e) {
+                partition.submit(() -> partition.accounts().remove(username));
+                recorded = deadLetter(username, record.type().name(), record.symbol(), FixedPoint.ofCents(record.priceCents()),
+                        FixedPoint.ofUnits(record.quantityUnits()), sequence, e);
+                writeFailures.increment();
+            }
+            // A record that could not be parked stays unfed, which keeps it in the journal past truncation.
+            if (recorded) {
+                unfed.remove(sequence);
+            }
+        });
+    }
+
+    private long fedThrough() {
+        return unfed.isEmpty() ? journal.lastSequence() : unfed.first() - 1;
+    }
+
+    private LedgerAccount account(LedgerPartition partition, String username) {
+        LedgerAccount account = partition.accounts().get(username);
+        if (account == null) {
+            account = partition.executeOnPersister(() -> {
+                User user = userRepo.findByUsername(username);
+                List<Holding> holdings = holdingRepo.getHoldingsByUserId(user.getId());
+                return new LedgerAccount(user.getId(), user.getBalance(), holdings);
+            });
+            partition.accounts().put(username, account);
+        }
+        return account;
+    }
+
+    private void consumeHoldings(Long userId, String symbol, BigDecimal price, BigDecimal quantity) {
+        List<Holding> lots = holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(userId, symbol);
+        SellPlan plan = SellPlan.of(lots, symbol, price, quantity);
+
+        if (!plan.getEmptiedLotIds().isEmpty()) {
+            holdingRepo.deleteHoldingsByIds(plan.getEmptiedLotIds());
+        }
+        if (!plan.getReducedLots().isEmpty()) {
+            holdingRepo.updateHoldingQuantities(plan.getReducedLots());
+        }
+        transactionRepo.insertTransactions(userId, symbol, plan.getLotQuantities(), price, "SELL");
+    }
+
+    // Journal records keep quantities as 10dp longs, which cover less than the quantity column does.
+    private void checkJournalRange(BigDecimal quantity) {
+        if (journal != null && !FixedPoint.fitsUnits(quantity)) {
+            throw new InvalidTradeException("Quantity " + quantity.toPlainString() + " exceeds the journaled limit of "
+                    + FixedPoint.ofUnits(Long.MAX_VALUE).toPlainString());
+        }
+    }
+
+    // Runs on the writer thread before the trade touches memory, so a refused trade was never acknowledged.
+    private void admit(LedgerPartition partition) {
+        if (partition.halted()) {
+            throw new LedgerUnavailableException("trading is suspended after a write-behind was lost");
+        }
+        if (partition.persistCapacity() == 0) {
+            throw new LedgerUnavailableException("too many trades are waiting to be written");
+        }
+    }
+
+    // The trade is already applied in memory and acknowledged. A write that cannot be made evicts the account so the
+    // next request reloads it from the database, and is parked as a dead letter for reconciliation. Writes are
+    // relative, so the ones queued behind it still apply cleanly.
+    private void write(LedgerPartition partition, String operation, String username, String symbol,
+                       BigDecimal price, BigDecimal quantity, Runnable writes) {
+        try {
+            persist("Ledger write-behind of " + operation, username, writes);
+        } catch (RuntimeException e) {
+            partition.submit(() -> partition.accounts().remove(username));
+            if (!deadLetter(username, operation, symbol, price, quantity, null, e)) {
+                partition.halt();
+            }
+            writeFailures.increment();
+        }
+    }
+
+    private boolean deadLetter(String username, String operation, String symbol, BigDecimal price, BigDecimal quantity,
+                               Long journalSequence, RuntimeException cause) {
+        try {
+            persist("Dead-lettering " + operation, username, () -> deadLetters.insert(
+                    username, operation, symbol, price, quantity, journalSequence, cause.toString()));
+            return true;
+        } catch (RuntimeException e) {
+            log.error("{} {} {} @ {} for {} is lost: it could not be written or dead-lettered",
+                    operation, quantity, symbol, price, username, e);
+            return false;
+        }
+    }
+
+    // Retries while the database is unreachable, up to the attempt limit; any other failure is final.
+    private void persist(String description, String username, Runnable writes) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                txTemplate.executeWithoutResult(status -> writes.run());
+                return;
+            } catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                if (attempt >= maxWriteAttempts || !backOff(attempt)) {
+                    log.error("{} for {} failed after {} attempts", description, username, attempt, e);
+                    throw e;
+                }
+                log.warn("{} for {} failed (attempt {}), retrying", description, username, attempt, e);
+            } catch (RuntimeException e) {
+                log.error("{} for {} failed", description, username, e);
+                throw e;
+            }
+        }
+    }
+
+    private static boolean backOff(int attempt) {
+        try {
+            Thread.sleep(Math.min(30_000L, 100L << Math.min(attempt, 8)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private LedgerPartition partitionFor(String username) {
+        return partitions[Math.floorMod(username.hashCode(), partitions.length)];
+    }
+}
@@ -0,0 +1,82 @@
+package com.backendtrading212.ledger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+class LedgerPartition {
+
+    private final Map<String, LedgerAccount> accounts = new HashMap<>();
+    private final ExecutorService writer;
+    private final ThreadPoolExecutor persister;
+    private volatile boolean halted;
+
+    LedgerPartition(int index, int persistBacklog) {
+        this.writer = Executors.newSingleThreadExecutor(r -> daemon(r, "ledger-" + index));
+        this.persister = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(persistBacklog), r -> daemon(r, "ledger-persist-" + index));
+    }
+
+    Map<String, LedgerAccount> accounts() {
+        return accounts;
+    }
+
+    <T> T execute(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, writer).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    <T> T executeOnPersister(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, persister).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    void submit(Runnable task) {
+        writer.execute(task);
+    }
+
+    void persist(Runnable write) {
+        persister.execute(write);
+    }
+
+    // Only the writer thread queues persister work, so room checked there cannot be taken before it is used.
+    int persistCapacity() {
+        return persister.getQueue().remainingCapacity();
+    }
+
+    boolean halted() {
+        return halted;
+    }
+
+    void halt() {
+        halted = true;
+    }
+
+    void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+        persister.shutdown();
+        persister.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,121 @@
+package com.backendtrading212.ledger;
+
+import com.backendtrading212.model.Holding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+final class LedgerSnapshots {
+
+    private static final int MAGIC = 0x4C534E50;
+    private static final String SUFFIX = ".snapshot";
+
+    record Snapshot(long sequence, Map<String, LedgerAccount> accounts) {
+    }
+
+    private LedgerSnapshots() {
+    }
+
+    static void write(Path dir, Snapshot snapshot) throws IOException {
+        Path target = dir.resolve(String.format("%020d%s", snapshot.sequence(), SUFFIX));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)), crc))) {
+            out.writeInt(MAGIC);
+            out.writeLong(snapshot.sequence());
+            out.writeInt(snapshot.accounts().size());
+
+            for (Map.Entry<String, LedgerAccount> entry : snapshot.accounts().entrySet()) {
+                LedgerAccount account = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(account.getUserId());
+                out.writeUTF(account.getBalance().toPlainString());
+
+                int lotCount = account.lots().values().stream().mapToInt(Map::size).sum();
+                out.writeInt(lotCount);
+                for (Map.Entry<String, TreeMap<BigDecimal, BigDecimal>> symbolLots : account.lots().entrySet()) {
+                    for (Map.Entry<BigDecimal, BigDecimal> lot : symbolLots.getValue().entrySet()) {
+                        out.writeUTF(symbolLots.getKey());
+                        out.writeUTF(lot.getKey().toPlainString());
+                        out.writeUTF(lot.getValue().toPlainString());
+                    }
+                }
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Path older : list(dir)) {
+            if (!older.equals(target)) Files.deleteIfExists(older);
+        }
+    }
+
+    static Snapshot readLatest(Path dir) throws IOException {
+        List<Path> snapshots = list(dir);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Snapshot snapshot = read(snapshots.get(i));
+            if (snapshot != null) return snapshot;
+        }
+        return null;
+    }
+
+    private static Snapshot read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC) return null;
+
+            long sequence = in.readLong();
+            int accountCount = in.readInt();
+            Map<String, LedgerAccount> accounts = new LinkedHashMap<>();
+
+            for (int i = 0; i < accountCount; i++) {
+                String username = in.readUTF();
+                long userId = in.readLong();
+                BigDecimal balance = new BigDecimal(in.readUTF());
+
+                int lotCount = in.readInt();
+                List<Holding> lots = new ArrayList<>(lotCount);
+                for (int j = 0; j < lotCount; j++) {
+                    lots.add(Holding.builder()
+                            .cryptoSymbol(in.readUTF())
+                            .price(new BigDecimal(in.readUTF()))
+                            .quantity(new BigDecimal(in.readUTF()))
+                            .build());
+                }
+                accounts.put(username, new LedgerAccount(userId, balance, lots));
+            }
+
+            long expected = crc.getValue();
+            return in.readLong() == expected ? new Snapshot(sequence, accounts) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.backendtrading212.marketdata;
+
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+public class FileTickSource implements TickSource {
+
+    private final Resource file;
+    private final long pauseNanos;
+    private final boolean loop;
+
+    public FileTickSource(Resource file, long pauseNanos, boolean loop) {
+        this.file = file;
+        this.pauseNanos = pauseNanos;
+        this.loop = loop;
+    }
+
+    @Override
+    public void stream(TickSink sink) throws IOException, InterruptedException {
+        do {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.US_ASCII))) {
+                if (TickLines.pump(reader, sink, pauseNanos) == 0) return;
+            }
+        } while (loop && !Thread.currentThread().isInterrupted());
+    }
+}
@@ -0,0 +1,76 @@
+package com.backendtrading212.marketdata;
+
+import com.backendtrading212.model.FixedPoint;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class LatestPriceTable {
+
+    private final Map<String, Integer> symbolIds = new ConcurrentHashMap<>();
+    private final ReentrantLock registration = new ReentrantLock();
+    private final AtomicReferenceArray<Quote> quotes;
+    private final long maxAgeMillis;
+
+    public LatestPriceTable(int maxSymbols, long maxAgeMillis) {
+        this.quotes = new AtomicReferenceArray<>(maxSymbols);
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public int symbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        registration.lock();
+        try {
+            if (!symbolIds.containsKey(symbol) && symbolIds.size() >= quotes.length()) {
+                return -1;
+            }
+            return symbolIds.computeIfAbsent(symbol, s -> symbolIds.size());
+        } finally {
+            registration.unlock();
+        }
+    }
+
+    public void publish(int symbolId, long priceCents, long timestamp) {
+        quotes.setRelease(symbolId, new Quote(priceCents, timestamp));
+    }
+
+    public Quote quote(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        return id == null ? null : quotes.getAcquire(id);
+    }
+
+    public Map<String, BigDecimal> freshPrices(Collection<String> symbols) {
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (String symbol : symbols) {
+            Quote quote = quote(symbol);
+            if (quote != null && quote.timestamp() >= oldest) {
+                prices.put(symbol, quote.price());
+            }
+        }
+        return prices;
+    }
+
+    public int symbols() {
+        return symbolIds.size();
+    }
+
+    public int capacity() {
+        return quotes.length();
+    }
+
+    public record Quote(long priceCents, long timestamp) {
+
+        public BigDecimal price() {
+            return FixedPoint.ofCents(priceCents);
+        }
+    }
+}
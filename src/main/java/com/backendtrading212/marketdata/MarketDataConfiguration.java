@@ -0,0 +1,55 @@
+package com.backendtrading212.marketdata;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "trading.marketdata.enabled", havingValue = "true")
+public class MarketDataConfiguration {
+
+    @Value("${trading.marketdata.source:file}")
+    private String source;
+
+    @Value("${trading.marketdata.file:classpath:ticks.csv}")
+    private String file;
+
+    @Value("${trading.marketdata.file-pause:0ms}")
+    private Duration filePause;
+
+    @Value("${trading.marketdata.file-loop:false}")
+    private boolean fileLoop;
+
+    @Value("${trading.marketdata.socket.host:localhost}")
+    private String socketHost;
+
+    @Value("${trading.marketdata.socket.port:9300}")
+    private int socketPort;
+
+    @Value("${trading.marketdata.socket.reconnect-delay:1s}")
+    private Duration reconnectDelay;
+
+    @Value("${trading.marketdata.max-symbols:4096}")
+    private int maxSymbols;
+
+    @Value("${trading.marketdata.max-age:30s}")
+    private Duration maxAge;
+
+    @Bean
+    public LatestPriceTable latestPriceTable() {
+        return new LatestPriceTable(maxSymbols, maxAge.toMillis());
+    }
+
+    @Bean
+    public TickSource tickSource(ResourceLoader resourceLoader) {
+        return switch (source) {
+            case "file" -> new FileTickSource(resourceLoader.getResource(file), filePause.toNanos(), fileLoop);
+            case "socket" -> new SocketTickSource(socketHost, socketPort, reconnectDelay.toMillis());
+            default -> throw new IllegalStateException("Unknown trading.marketdata.source: " + source);
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package com.backendtrading212.marketdata;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Service
+@ConditionalOnProperty(name = "trading.marketdata.enabled", havingValue = "true")
+public class MarketDataService {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketDataService.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    @Autowired
+    private TickSource source;
+
+    @Autowired
+    private LatestPriceTable prices;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.marketdata.ring-size:65536}")
+    private int ringSize;
+
+    @Value("${trading.marketdata.drain-batch:4096}")
+    private int drainBatch;
+
+    private TickRingBuffer ring;
+    private Thread producer;
+    private Thread consumer;
+    private volatile boolean running;
+
+    private Counter ingested;
+    private Counter conflated;
+    private Counter dropped;
+    private Counter ringFull;
+
+    // Consumer-owned scratch space for per-batch conflation.
+    private long[] batchPrices;
+    private long[] batchTimestamps;
+    private int[] batchSeen;
+    private int[] batchSymbols;
+    private int batchId = 1;
+    private int batchCount;
+
+    @PostConstruct
+    void start() {
+        ring = new TickRingBuffer(ringSize);
+        int maxSymbols = prices.capacity();
+        batchPrices = new long[maxSymbols];
+        batchTimestamps = new long[maxSymbols];
+        batchSeen = new int[maxSymbols];
+        batchSymbols = new int[maxSymbols];
+
+        ingested = meterRegistry.counter("trading.marketdata.ticks", "outcome", "ingested");
+        conflated = meterRegistry.counter("trading.marketdata.ticks", "outcome", "conflated");
+        dropped = meterRegistry.counter("trading.marketdata.ticks", "outcome", "dropped");
+        ringFull = meterRegistry.counter("trading.marketdata.ring.full");
+        Gauge.builder("trading.marketdata.ring.depth", ring, TickRingBuffer::size).register(meterRegistry);
+        Gauge.builder("trading.marketdata.symbols", prices, LatestPriceTable::symbols).register(meterRegistry);
+
+        running = true;
+        consumer = new Thread(this::consume, "marketdata-conflator");
+        consumer.setDaemon(true);
+        consumer.start();
+        producer = new Thread(this::produce, "marketdata-ingest");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        producer.interrupt();
+        producer.join(1000);
+        consumer.join(1000);
+    }
+
+    private void produce() {
+        try {
+            source.stream(this::publish);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Market data source failed", e);
+        }
+    }
+
+    private void publish(String symbol, long priceCents) {
+        int symbolId = prices.symbolId(symbol);
+        if (symbolId < 0) {
+            dropped.increment();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (ring.offer(symbolId, priceCents, now)) {
+            return;
+        }
+        ringFull.increment();
+        while (!ring.offer(symbolId, priceCents, now)) {
+            if (!running) return;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private void consume() {
+        while (running || ring.size() > 0) {
+            int drained = ring.drain(this::conflate, drainBatch);
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            for (int i = 0; i < batchCount; i++) {
+                int symbolId = batchSymbols[i];
+                prices.publish(symbolId, batchPrices[symbolId], batchTimestamps[symbolId]);
+            }
+            ingested.increment(drained);
+            conflated.increment(drained - batchCount);
+            batchCount = 0;
+            if (++batchId == 0) {
+                Arrays.fill(batchSeen, 0);
+                batchId = 1;
+            }
+        }
+    }
+
+    private void conflate(int symbolId, long priceCents, long timestamp) {
+        if (batchSeen[symbolId] != batchId) {
+            batchSeen[symbolId] = batchId;
+            batchSymbols[batchCount++] = symbolId;
+        }
+        batchPrices[symbolId] = priceCents;
+        batchTimestamps[symbolId] = timestamp;
+    }
+}
@@ -0,0 +1,42 @@
+package com.backendtrading212.marketdata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class SocketTickSource implements TickSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SocketTickSource.class);
+
+    private final String host;
+    private final int port;
+    private final long reconnectDelayMs;
+
+    public SocketTickSource(String host, int port, long reconnectDelayMs) {
+        this.host = host;
+        this.port = port;
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    @Override
+    public void stream(TickSink sink) throws InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), (int) Math.max(reconnectDelayMs, 1000));
+                log.info("Connected to market data feed {}:{}", host, port);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                TickLines.pump(reader, sink, 0);
+                log.warn("Market data feed {}:{} closed the connection", host, port);
+            } catch (IOException e) {
+                log.warn("Market data feed {}:{} unavailable: {}", host, port, e.getMessage());
+            }
+            Thread.sleep(reconnectDelayMs);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.backendtrading212.marketdata;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+final class TickLines {
+
+    private TickLines() {
+    }
+
+    // One tick per line as "SYMBOL,PRICE"; blank lines and lines starting with '#' are skipped.
+    static long pump(BufferedReader reader, TickSink sink, long pauseNanos) throws IOException, InterruptedException {
+        long ticks = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            int comma = line.indexOf(',');
+            if (comma <= 0 || line.startsWith("#")) continue;
+
+            long cents = parseCents(line, comma + 1);
+            if (cents <= 0) continue;
+
+            sink.accept(line.substring(0, comma).trim(), cents);
+            ticks++;
+            if (pauseNanos > 0) {
+                Thread.sleep(pauseNanos / 1_000_000, (int) (pauseNanos % 1_000_000));
+            }
+        }
+        return ticks;
+    }
+
+    static long parseCents(CharSequence text, int from) {
+        long units = 0;
+        int decimals = -1;
+        boolean roundUp = false;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (decimals >= 2) {
+                    if (decimals == 2) roundUp = c >= '5';
+                    decimals++;
+                    continue;
+                }
+                units = units * 10 + (c - '0');
+                if (decimals >= 0) decimals++;
+            } else if (c != ' ' && c != '\r') {
+                return -1;
+            }
+        }
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            units *= 10;
+        }
+        return roundUp ? units + 1 : units;
+    }
+}
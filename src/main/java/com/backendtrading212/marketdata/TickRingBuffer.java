@@ -0,0 +1,72 @@
+package com.backendtrading212.marketdata;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer single-consumer ring; each side only publishes its own counter with release semantics.
+public final class TickRingBuffer {
+
+    private final int mask;
+    private final int[] symbols;
+    private final long[] prices;
+    private final long[] timestamps;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead;
+    private long cachedTail;
+
+    public TickRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.symbols = new int[size];
+        this.prices = new long[size];
+        this.timestamps = new long[size];
+    }
+
+    public boolean offer(int symbolId, long priceCents, long timestamp) {
+        long position = tail.getPlain();
+        if (position - cachedHead > mask) {
+            cachedHead = head.getAcquire();
+            if (position - cachedHead > mask) {
+                return false;
+            }
+        }
+
+        int slot = (int) position & mask;
+        symbols[slot] = symbolId;
+        prices[slot] = priceCents;
+        timestamps[slot] = timestamp;
+        tail.setRelease(position + 1);
+        return true;
+    }
+
+    public int drain(TickHandler handler, int maxTicks) {
+        long position = head.getPlain();
+        if (position >= cachedTail) {
+            cachedTail = tail.getAcquire();
+            if (position >= cachedTail) {
+                return 0;
+            }
+        }
+
+        int count = (int) Math.min(cachedTail - position, maxTicks);
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (position + i) & mask;
+            handler.onTick(symbols[slot], prices[slot], timestamps[slot]);
+        }
+        head.setRelease(position + count);
+        return count;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long size() {
+        return tail.getAcquire() - head.getAcquire();
+    }
+
+    public interface TickHandler {
+        void onTick(int symbolId, long priceCents, long timestamp);
+    }
+}
@@ -0,0 +1,6 @@
+package com.backendtrading212.marketdata;
+
+public interface TickSink {
+
+    void accept(String symbol, long priceCents);
+}
@@ -0,0 +1,11 @@
+package com.backendtrading212.marketdata;
+
+import java.io.IOException;
+
+public interface TickSource {
+
+    /**
+     * Streams ticks into the sink until the source is exhausted or the thread is interrupted.
+     */
+    void stream(TickSink sink) throws IOException, InterruptedException;
+}
@@ -0,0 +1,6 @@
+package com.backendtrading212.matching;
+
+public interface MatchListener {
+
+    void onFill(Order taker, Order maker, long priceTicks, long quantity);
+}
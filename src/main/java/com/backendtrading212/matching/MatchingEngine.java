@@ -0,0 +1,480 @@
+package com.backendtrading212.matching;
+
+import com.backendtrading212.datasource.ReadRouting;
+import com.backendtrading212.dto.OrderBookView;
+import com.backendtrading212.dto.OrderRequest;
+import com.backendtrading212.dto.OrderResult;
+import com.backendtrading212.exception.InsufficientBalanceException;
+import com.backendtrading212.exception.InvalidTradeException;
+import com.backendtrading212.ledger.LedgerEngine;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.model.FixedPoint;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.OrderReservationRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import com.backendtrading212.service.SellPlan;
+import com.backendtrading212.service.TradeRetryPolicy;
+import com.backendtrading212.stream.TradeCommittedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@ConditionalOnProperty(name = "trading.matching.enabled", havingValue = "true")
+public class MatchingEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(MatchingEngine.class);
+    private static final int MAX_SYMBOL_LENGTH = 10;
+
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private HoldingRepository holdingRepo;
+    @Autowired
+    private TransactionRepository transactionRepo;
+    @Autowired
+    private OrderReservationRepository reservationRepo;
+    @Autowired
+    private TradeRetryPolicy retryPolicy;
+    @Autowired
+    private ApplicationEventPublisher events;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired(required = false)
+    private LedgerEngine ledger;
+    @Autowired(required = false)
+    private ReadRouting readRouting;
+
+    @Value("${trading.matching.tick-size:0.01}")
+    private BigDecimal tickSize;
+
+    @Value("${trading.matching.max-symbols:64}")
+    private int maxSymbols;
+
+    @Value("${trading.matching.max-book-depth:50}")
+    private int maxBookDepth;
+
+    private final Map<String, SymbolMatcher> matchers = new ConcurrentHashMap<>();
+    private final ReentrantLock matchersLock = new ReentrantLock();
+    private final Map<Long, Ticket> tickets = new ConcurrentHashMap<>();
+    private final AtomicLong orderIds = new AtomicLong();
+    private long tickCents;
+
+    private Counter buyOrders;
+    private Counter sellOrders;
+    private Counter fillsSettled;
+    private Counter settlementFailures;
+
+    @PostConstruct
+    void start() {
+        if (ledger != null) {
+            throw new IllegalStateException("trading.matching.enabled requires trading.ledger.enabled=false");
+        }
+        tickCents = FixedPoint.isPrice(tickSize) ? FixedPoint.cents(tickSize) : 0;
+        if (tickCents <= 0) {
+            throw new IllegalStateException("trading.matching.tick-size must be a positive multiple of 0.01");
+        }
+        orderIds.set(System.currentTimeMillis() * 1000);
+
+        buyOrders = meterRegistry.counter("trading.matching.orders", "side", "BUY");
+        sellOrders = meterRegistry.counter("trading.matching.orders", "side", "SELL");
+        fillsSettled = meterRegistry.counter("trading.matching.fills");
+        settlementFailures = meterRegistry.counter("trading.matching.settlement.failures");
+
+        returnOrphanedReservations();
+    }
+
+    // Books are in memory, so on startup every reservation belongs to an order that no longer exists. This assumes
+    // a single engine per database.
+    void returnOrphanedReservations() {
+        Map<Long, Long> owners = reservationRepo.findOrderOwners();
+        owners.forEach(this::returnReservations);
+        if (!owners.isEmpty()) {
+            log.info("Returned reservations held by {} orders from before the last shutdown", owners.size());
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        for (SymbolMatcher matcher : matchers.values()) {
+            matcher.execute(() -> {
+                matcher.book.cancelAll(order -> matcher.settle(() -> closeOrder(tickets.get(order.getId()))));
+                return null;
+            });
+            matcher.shutdown();
+        }
+    }
+
+    public OrderResult place(OrderRequest request) {
+        if (request.getSide() == null) {
+            throw new InvalidTradeException("Order side is required");
+        }
+        if (request.getSymbol() == null || request.getSymbol().isBlank() || request.getSymbol().length() > MAX_SYMBOL_LENGTH) {
+            throw new InvalidTradeException("Order symbol must be 1 to " + MAX_SYMBOL_LENGTH + " characters");
+        }
+        if (request.getQuantity() == null || request.getQuantity().signum() <= 0) {
+            throw new InvalidTradeException("Order quantity must be positive");
+        }
+
+        OrderType type = request.getType() == null ? OrderType.LIMIT : request.getType();
+        Side side = request.getSide();
+        long priceTicks = request.getPrice() == null ? 0 : toTicks(request.getPrice());
+        if (type == OrderType.LIMIT && priceTicks <= 0) {
+            throw new InvalidTradeException("Limit orders need a positive price");
+        }
+        if (type == OrderType.MARKET && side == Side.BUY && priceTicks <= 0) {
+            throw new InvalidTradeException("Market buys need a price cap to reserve funds against");
+        }
+
+        if (!FixedPoint.fitsUnits(request.getQuantity())) {
+            throw new InvalidTradeException("Order quantity needs at most " + FixedPoint.QUANTITY_SCALE
+                    + " decimal places and must not exceed " + FixedPoint.ofUnits(Long.MAX_VALUE).toPlainString());
+        }
+        long quantity = FixedPoint.units(request.getQuantity());
+
+        String symbol = request.getSymbol();
+        Long userId = userRepo.findIdByUsername(request.getUsername());
+        SymbolMatcher matcher = matcherFor(symbol);
+
+        Ticket ticket = new Ticket(orderIds.incrementAndGet(), symbol, request.getUsername(), userId, side, priceTicks);
+        reserve(ticket, priceTicks, quantity);
+        tickets.put(ticket.orderId, ticket);
+        (side == Side.BUY ? buyOrders : sellOrders).increment();
+
+        Order order = new Order(ticket.orderId, userId, side, type, priceTicks, quantity);
+        Submission submission;
+        try {
+            submission = submit(matcher, ticket, order);
+        } catch (RejectedExecutionException e) {
+            closeOrder(ticket);
+            throw new InvalidTradeException("Order book for " + symbol + " is shutting down");
+        }
+        return submission.await();
+    }
+
+    private Submission submit(SymbolMatcher matcher, Ticket ticket, Order order) {
+        String symbol = ticket.symbol;
+        return matcher.execute(() -> {
+            matcher.book.submit(order);
+            List<SymbolMatcher.Fill> fills = matcher.drainFills();
+            List<CompletableFuture<Boolean>> settlements = new ArrayList<>(fills.size() + 1);
+            for (SymbolMatcher.Fill fill : fills) {
+                settlements.add(matcher.settle(() -> settle(symbol, fill)));
+            }
+            if (!order.isResting() && order.getRemaining() > 0) {
+                settlements.add(matcher.settle(() -> closeOrder(ticket)));
+            }
+            return new Submission(result(symbol, order, fills), settlements);
+        });
+    }
+
+    public OrderResult cancel(long orderId) {
+        Ticket ticket = tickets.get(orderId);
+        SymbolMatcher matcher = ticket == null ? null : matchers.get(ticket.symbol);
+        if (matcher == null) {
+            throw new InvalidTradeException("Unknown or completed order " + orderId);
+        }
+
+        return matcher.execute(() -> {
+            Order order = matcher.book.cancel(orderId);
+            if (order == null) {
+                throw new InvalidTradeException("Order " + orderId + " is already filled or cancelled");
+            }
+            CompletableFuture<Boolean> released = matcher.settle(() -> closeOrder(ticket));
+            return new Submission(result(ticket.symbol, order, List.of()), List.of(released));
+        }).await();
+    }
+
+    // Closes every order the user still has open. Reservations from before a reset are dropped, not returned.
+    public int cancelAll(Long userId) {
+        int cancelled = 0;
+        for (Ticket ticket : List.copyOf(tickets.values())) {
+            if (!ticket.userId.equals(userId)) continue;
+            try {
+                cancel(ticket.orderId);
+                cancelled++;
+            } catch (InvalidTradeException e) {
+                // Filled or cancelled since the scan.
+            }
+        }
+        return cancelled;
+    }
+
+    public OrderBookView book(String symbol, int depth) {
+        SymbolMatcher matcher = matchers.get(symbol);
+        int levels = Math.max(1, Math.min(depth, maxBookDepth));
+        if (matcher == null) {
+            return OrderBookView.builder().symbol(symbol).bids(List.of()).asks(List.of()).build();
+        }
+
+        return matcher.execute(() -> OrderBookView.builder()
+                .symbol(symbol)
+                .bids(view(matcher.book.levels(Side.BUY, levels)))
+                .asks(view(matcher.book.levels(Side.SELL, levels)))
+                .build());
+    }
+
+    private SymbolMatcher matcherFor(String symbol) {
+        SymbolMatcher matcher = matchers.get(symbol);
+        if (matcher != null) {
+            return matcher;
+        }
+        matchersLock.lock();
+        try {
+            if (!matchers.containsKey(symbol) && matchers.size() >= maxSymbols) {
+                throw new InvalidTradeException("Order books are limited to " + maxSymbols + " symbols");
+            }
+            return matchers.computeIfAbsent(symbol, SymbolMatcher::new);
+        } finally {
+            matchersLock.unlock();
+        }
+    }
+
+    private void reserve(Ticket ticket, long priceTicks, long quantity) {
+        if (ticket.side == Side.BUY) {
+            BigDecimal notional = FixedPoint.amount(price(priceTicks), FixedPoint.ofUnits(quantity), RoundingMode.UP);
+            retryPolicy.execute(() -> {
+                if (!userRepo.debitBalance(ticket.userId, notional)) {
+                    throw new InsufficientBalanceException("Needed: $" + notional + ", Available: $"
+                            + userRepo.findBalanceById(ticket.userId));
+                }
+                reservationRepo.reserveCash(ticket.orderId, ticket.userId, ticket.symbol, notional);
+            });
+            ticket.reservedCents = FixedPoint.cents(notional);
+            return;
+        }
+
+        // Escrowed units leave holdings, so /api/sell and batches cannot sell them while the order is open.
+        // The version bump locks the account first, as every other writer of its lots does.
+        retryPolicy.execute(() -> {
+            userRepo.bumpVersion(ticket.userId);
+            List<Holding> lots = holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(ticket.userId, ticket.symbol);
+            SellPlan plan = SellPlan.of(lots, ticket.symbol, BigDecimal.ZERO, FixedPoint.ofUnits(quantity));
+            if (!plan.getEmptiedLotIds().isEmpty()) {
+                holdingRepo.deleteHoldingsByIds(plan.getEmptiedLotIds());
+            }
+            if (!plan.getReducedLots().isEmpty()) {
+                holdingRepo.updateHoldingQuantities(plan.getReducedLots());
+            }
+
+            List<Holding> escrow = new ArrayList<>(plan.getLotQuantities().size());
+            for (int i = 0; i < plan.getLotQuantities().size(); i++) {
+                Holding lot = lots.get(i);
+                escrow.add(Holding.builder().userId(lot.getUserId()).cryptoSymbol(ticket.symbol)
+                        .quantity(plan.getLotQuantities().get(i)).price(lot.getPrice()).build());
+            }
+            reservationRepo.reserveLots(ticket.orderId, escrow);
+        });
+    }
+
+    private boolean settle(String symbol, SymbolMatcher.Fill fill) {
+        Ticket buyer = tickets.get(fill.buy().getId());
+        Ticket seller = tickets.get(fill.sell().getId());
+        BigDecimal price = price(fill.priceTicks());
+        BigDecimal quantity = FixedPoint.ofUnits(fill.quantity());
+        BigDecimal cost = FixedPoint.amount(price, quantity, RoundingMode.HALF_UP);
+
+        boolean settled;
+        try {
+            retryPolicy.execute(() -> {
+                List<Holding> escrow = reservationRepo.findLots(seller.orderId);
+                SellPlan plan = SellPlan.of(escrow, symbol, price, quantity);
+                if (!plan.getEmptiedLotIds().isEmpty()) {
+                    reservationRepo.deleteLotsByIds(plan.getEmptiedLotIds());
+                }
+                if (!plan.getReducedLots().isEmpty()) {
+                    reservationRepo.updateLotQuantities(plan.getReducedLots());
+                }
+                userRepo.adjustBalance(seller.userId, plan.getProceeds());
+                transactionRepo.insertTransactions(seller.userId, symbol, plan.getLotQuantities(), price, "SELL");
+
+                if (!reservationRepo.adjustCash(buyer.orderId, cost.negate())) {
+                    throw new InvalidTradeException("Order " + buyer.orderId + " was placed before its account was reset");
+                }
+                userRepo.bumpVersion(buyer.userId);
+                holdingRepo.upsertHolding(buyer.userId, symbol, quantity, price);
+                transactionRepo.insertTransaction(buyer.userId, symbol, quantity, price, "BUY");
+            });
+            buyer.reservedCents -= FixedPoint.cents(cost);
+            fillsSettled.increment();
+            committed(buyer.username, "BUY", symbol, price, quantity);
+            committed(seller.username, "SELL", symbol, price, quantity);
+            settled = true;
+        } catch (RuntimeException e) {
+            // Neither side moves: the units stay in the seller's escrow until that order closes, and the
+            // buyer's cash for them is refunded below.
+            settlementFailures.increment();
+            log.error("Failed to settle {} {} @ {} between orders {} and {}",
+                    quantity, symbol, price, buyer.orderId, seller.orderId, e);
+            settled = false;
+        }
+
+        refund(buyer, fill.buyRemaining());
+        if (fill.sellRemaining() == 0) {
+            closeOrder(seller);
+        }
+        return settled;
+    }
+
+    // Keeps only what the still-open quantity can cost at the order's limit, so price improvement is returned per fill.
+    private void refund(Ticket buyer, long openQuantity) {
+        if (openQuantity == 0) {
+            closeOrder(buyer);
+            return;
+        }
+        long keepCents = FixedPoint.cents(FixedPoint.amount(price(buyer.limitTicks), FixedPoint.ofUnits(openQuantity), RoundingMode.UP));
+        long excessCents = buyer.reservedCents - keepCents;
+        if (excessCents <= 0) return;
+
+        BigDecimal refund = FixedPoint.ofCents(excessCents);
+        try {
+            retryPolicy.execute(() -> {
+                if (reservationRepo.adjustCash(buyer.orderId, refund.negate())) {
+                    userRepo.adjustBalance(buyer.userId, refund);
+                }
+            });
+            buyer.reservedCents = keepCents;
+        } catch (RuntimeException e) {
+            settlementFailures.increment();
+            log.error("Failed to refund {} of reserved cash for order {} to user {}", refund, buyer.orderId, buyer.userId, e);
+        }
+    }
+
+    // Returns whatever the order still holds. Anything that cannot be returned now stays recorded for the next startup.
+    private boolean closeOrder(Ticket ticket) {
+        if (ticket == null) return true;
+        tickets.remove(ticket.orderId);
+        try {
+            returnReservations(ticket.orderId, ticket.userId);
+            return true;
+        } catch (RuntimeException e) {
+            settlementFailures.increment();
+            log.error("Failed to release the reservations of order {} for user {}", ticket.orderId, ticket.userId, e);
+            return false;
+        }
+    }
+
+    private void returnReservations(long orderId, Long userId) {
+        retryPolicy.execute(() -> {
+            userRepo.bumpVersion(userId);
+            List<Holding> lots = reservationRepo.findLots(orderId);
+            if (!lots.isEmpty()) {
+                holdingRepo.upsertHoldings(lots);
+            }
+            BigDecimal cash = reservationRepo.findCash(orderId);
+            if (cash.signum() > 0) {
+                userRepo.adjustBalance(userId, cash);
+            }
+            reservationRepo.deleteOrder(orderId);
+        });
+    }
+
+    private void committed(String username, String type, String symbol, BigDecimal price, BigDecimal quantity) {
+        if (readRouting != null) {
+            readRouting.recordWrite(username);
+        }
+        events.publishEvent(new TradeCommittedEvent(username, type, symbol, price, quantity));
+    }
+
+    private OrderResult result(String symbol, Order order, List<SymbolMatcher.Fill> fills) {
+        OrderResult.Status status;
+        if (order.isResting()) {
+            status = order.getFilled() > 0 ? OrderResult.Status.PARTIALLY_FILLED : OrderResult.Status.NEW;
+        } else {
+            status = order.getRemaining() == 0 ? OrderResult.Status.FILLED : OrderResult.Status.CANCELLED;
+        }
+
+        return OrderResult.builder()
+                .orderId(order.getId())
+                .symbol(symbol)
+                .side(order.getSide())
+                .type(order.getType())
+                .status(status)
+                .price(order.getPriceTicks() == 0 ? null : price(order.getPriceTicks()))
+                .quantity(FixedPoint.ofUnits(order.getQuantity()))
+                .filledQuantity(FixedPoint.ofUnits(order.getFilled()))
+                .remainingQuantity(FixedPoint.ofUnits(order.getRemaining()))
+                .fills(fills.stream()
+                        .map(fill -> new OrderResult.Fill(fill.maker().getId(),
+                                price(fill.priceTicks()),
+                                FixedPoint.ofUnits(fill.quantity()), false))
+                        .toList())
+                .build();
+    }
+
+    private List<OrderBookView.Level> view(List<OrderBook.Level> levels) {
+        return levels.stream()
+                .map(level -> new OrderBookView.Level(price(level.priceTicks()),
+                        FixedPoint.ofUnits(level.quantity()), level.orders()))
+                .toList();
+    }
+
+    private long toTicks(BigDecimal price) {
+        if (!FixedPoint.isPrice(price) || FixedPoint.cents(price) % tickCents != 0) {
+            throw new InvalidTradeException("Price " + price.toPlainString() + " is not a multiple of the tick size "
+                    + tickSize.toPlainString());
+        }
+        return FixedPoint.cents(price) / tickCents;
+    }
+
+    private BigDecimal price(long priceTicks) {
+        return FixedPoint.ofCents(Math.multiplyExact(priceTicks, tickCents));
+    }
+
+    // Settlements run on the symbol's settler thread; callers wait for them off the matcher thread, so a response
+    // only reports fills whose balances and holdings are committed.
+    private record Submission(OrderResult result, List<CompletableFuture<Boolean>> settlements) {
+
+        OrderResult await() {
+            List<OrderResult.Fill> fills = new ArrayList<>(result.getFills().size());
+            for (int i = 0; i < settlements.size(); i++) {
+                boolean settled = settlements.get(i).join();
+                if (i < result.getFills().size()) {
+                    OrderResult.Fill fill = result.getFills().get(i);
+                    fills.add(new OrderResult.Fill(fill.makerOrderId(), fill.price(), fill.quantity(), settled));
+                }
+            }
+            result.setFills(fills);
+            return result;
+        }
+    }
+
+    private static final class Ticket {
+        private final long orderId;
+        private final String symbol;
+        private final String username;
+        private final Long userId;
+        private final Side side;
+        private final long limitTicks;
+        private long reservedCents;
+
+        private Ticket(long orderId, String symbol, String username, Long userId, Side side, long limitTicks) {
+            this.orderId = orderId;
+            this.symbol = symbol;
+            this.username = username;
+            this.userId = userId;
+            this.side = side;
+            this.limitTicks = limitTicks;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.backendtrading212.matching;
+
+public final class Order {
+
+    private final long id;
+    private final long ownerId;
+    private final Side side;
+    private final OrderType type;
+    private final long priceTicks;
+    private final long quantity;
+    long remaining;
+
+    Order prev;
+    Order next;
+    PriceLevel level;
+
+    public Order(long id, long ownerId, Side side, OrderType type, long priceTicks, long quantity) {
+        this.id = id;
+        this.ownerId = ownerId;
+        this.side = side;
+        this.type = type;
+        this.priceTicks = priceTicks;
+        this.quantity = quantity;
+        this.remaining = quantity;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getOwnerId() {
+        return ownerId;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public OrderType getType() {
+        return type;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public long getFilled() {
+        return quantity - remaining;
+    }
+
+    public boolean isResting() {
+        return level != null;
+    }
+}
@@ -0,0 +1,97 @@
+package com.backendtrading212.matching;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public final class OrderBook {
+
+    private final PriceLevels bids = new PriceLevels(false);
+    private final PriceLevels asks = new PriceLevels(true);
+    private final Map<Long, Order> resting = new HashMap<>();
+    private final MatchListener listener;
+
+    public OrderBook(MatchListener listener) {
+        this.listener = listener;
+    }
+
+    public void submit(Order order) {
+        PriceLevels opposite = order.getSide() == Side.BUY ? asks : bids;
+
+        PriceLevel best;
+        while (order.remaining > 0 && (best = opposite.best()) != null && crosses(order, best.priceTicks)) {
+            Order maker = best.head;
+            while (maker != null && order.remaining > 0) {
+                long quantity = Math.min(order.remaining, maker.remaining);
+                order.remaining -= quantity;
+                maker.remaining -= quantity;
+                best.quantity -= quantity;
+                listener.onFill(order, maker, best.priceTicks, quantity);
+
+                Order next = maker.next;
+                if (maker.remaining == 0) {
+                    best.unlink(maker);
+                    resting.remove(maker.getId());
+                }
+                maker = next;
+            }
+            if (best.isEmpty()) {
+                opposite.remove(best);
+            }
+        }
+
+        if (order.remaining > 0 && order.getType() == OrderType.LIMIT) {
+            PriceLevels own = order.getSide() == Side.BUY ? bids : asks;
+            own.getOrCreate(order.getPriceTicks()).append(order);
+            resting.put(order.getId(), order);
+        }
+    }
+
+    public Order cancel(long orderId) {
+        Order order = resting.remove(orderId);
+        if (order == null) {
+            return null;
+        }
+
+        PriceLevel level = order.level;
+        level.unlink(order);
+        if (level.isEmpty()) {
+            (order.getSide() == Side.BUY ? bids : asks).remove(level);
+        }
+        return order;
+    }
+
+    public void cancelAll(Consumer<Order> cancelled) {
+        for (Order order : new ArrayList<>(resting.values())) {
+            cancel(order.getId());
+            cancelled.accept(order);
+        }
+    }
+
+    public List<Level> levels(Side side, int depth) {
+        PriceLevels levels = side == Side.BUY ? bids : asks;
+        List<Level> result = new ArrayList<>(Math.min(depth, levels.size()));
+        for (int rank = 0; rank < depth; rank++) {
+            PriceLevel level = levels.levelAt(rank);
+            if (level == null) break;
+            result.add(new Level(level.priceTicks, level.quantity, level.orders));
+        }
+        return result;
+    }
+
+    public int restingOrders() {
+        return resting.size();
+    }
+
+    private static boolean crosses(Order order, long bestPriceTicks) {
+        if (order.getType() == OrderType.MARKET && order.getPriceTicks() == 0) return true;
+        return order.getSide() == Side.BUY
+                ? order.getPriceTicks() >= bestPriceTicks
+                : order.getPriceTicks() <= bestPriceTicks;
+    }
+
+    public record Level(long priceTicks, long quantity, int orders) {
+    }
+}
@@ -0,0 +1,6 @@
+package com.backendtrading212.matching;
+
+public enum OrderType {
+    LIMIT,
+    MARKET
+}
@@ -0,0 +1,50 @@
+package com.backendtrading212.matching;
+
+final class PriceLevel {
+
+    final long priceTicks;
+    Order head;
+    Order tail;
+    long quantity;
+    int orders;
+
+    PriceLevel(long priceTicks) {
+        this.priceTicks = priceTicks;
+    }
+
+    void append(Order order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        quantity += order.remaining;
+        orders++;
+    }
+
+    void unlink(Order order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        quantity -= order.remaining;
+        orders--;
+        order.prev = null;
+        order.next = null;
+        order.level = null;
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.backendtrading212.matching;
+
+import java.util.Arrays;
+
+final class PriceLevels {
+
+    private final boolean lowestFirst;
+    private long[] keys = new long[64];
+    private PriceLevel[] levels = new PriceLevel[64];
+    private int size;
+
+    PriceLevels(boolean lowestFirst) {
+        this.lowestFirst = lowestFirst;
+    }
+
+    PriceLevel best() {
+        return size == 0 ? null : levels[size - 1];
+    }
+
+    PriceLevel levelAt(int rank) {
+        return rank < size ? levels[size - 1 - rank] : null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    PriceLevel getOrCreate(long priceTicks) {
+        long key = keyOf(priceTicks);
+        int index = search(key);
+        if (index >= 0) {
+            return levels[index];
+        }
+
+        int insertAt = -index - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+        System.arraycopy(levels, insertAt, levels, insertAt + 1, size - insertAt);
+
+        PriceLevel level = new PriceLevel(priceTicks);
+        keys[insertAt] = key;
+        levels[insertAt] = level;
+        size++;
+        return level;
+    }
+
+    void remove(PriceLevel level) {
+        int index = size > 0 && levels[size - 1] == level ? size - 1 : search(keyOf(level.priceTicks));
+        if (index < 0) return;
+
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(levels, index + 1, levels, index, size - index - 1);
+        levels[--size] = null;
+    }
+
+    // Keys ascend towards the best price so the top of book sits at the end of the arrays.
+    private long keyOf(long priceTicks) {
+        return lowestFirst ? -priceTicks : priceTicks;
+    }
+
+    private int search(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
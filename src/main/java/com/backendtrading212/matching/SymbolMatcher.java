@@ -0,0 +1,82 @@
+package com.backendtrading212.matching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+class SymbolMatcher implements MatchListener {
+
+    final String symbol;
+    final OrderBook book = new OrderBook(this);
+    final List<Fill> fills = new ArrayList<>();
+
+    private final ExecutorService matcher;
+    private final ExecutorService settler;
+
+    SymbolMatcher(String symbol) {
+        this.symbol = symbol;
+        this.matcher = Executors.newSingleThreadExecutor(r -> daemon(r, "matching-" + symbol));
+        this.settler = Executors.newSingleThreadExecutor(r -> daemon(r, "matching-settle-" + symbol));
+    }
+
+    @Override
+    public void onFill(Order taker, Order maker, long priceTicks, long quantity) {
+        fills.add(new Fill(taker, maker, priceTicks, quantity, taker.remaining, maker.remaining));
+    }
+
+    List<Fill> drainFills() {
+        List<Fill> drained = new ArrayList<>(fills);
+        fills.clear();
+        return drained;
+    }
+
+    <T> T execute(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, matcher).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    CompletableFuture<Boolean> settle(Supplier<Boolean> settlement) {
+        return CompletableFuture.supplyAsync(settlement, settler);
+    }
+
+    void shutdown() throws InterruptedException {
+        matcher.shutdown();
+        matcher.awaitTermination(30, TimeUnit.SECONDS);
+        settler.shutdown();
+        settler.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    record Fill(Order taker, Order maker, long priceTicks, long quantity, long takerRemaining, long makerRemaining) {
+
+        Order buy() {
+            return taker.getSide() == Side.BUY ? taker : maker;
+        }
+
+        Order sell() {
+            return taker.getSide() == Side.SELL ? taker : maker;
+        }
+
+        long buyRemaining() {
+            return taker.getSide() == Side.BUY ? takerRemaining : makerRemaining;
+        }
+
+        long sellRemaining() {
+            return taker.getSide() == Side.SELL ? takerRemaining : makerRemaining;
+        }
+    }
+}
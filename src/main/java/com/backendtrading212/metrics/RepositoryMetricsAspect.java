@@ -0,0 +1,88 @@
+package com.backendtrading212.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Aspect
+@Component
+@ConditionalOnProperty(name = "trading.metrics.repositories.enabled", havingValue = "true", matchIfMissing = true)
+public class RepositoryMetricsAspect {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Method, Meters> meters = new ConcurrentHashMap<>();
+
+    @Around("within(com.backendtrading212.repository..*) && execution(public * *(..))")
+    public Object record(ProceedingJoinPoint call) throws Throwable {
+        Meters methodMeters = meters.computeIfAbsent(((MethodSignature) call.getSignature()).getMethod(), this::register);
+
+        long start = System.nanoTime();
+        try {
+            Object result = call.proceed();
+            methodMeters.success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            long rows = rowsOf(result);
+            if (rows > 0) {
+                methodMeters.rows.increment(rows);
+            }
+            return result;
+        } catch (Throwable e) {
+            methodMeters.error.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Meters register(Method method) {
+        String repository = method.getDeclaringClass().getSimpleName();
+        String name = method.getName();
+
+        return new Meters(
+                timer(repository, name, "success"),
+                timer(repository, name, "error"),
+                Counter.builder("trading.repository.rows")
+                        .description("Rows returned or affected by repository calls")
+                        .tags("repository", repository, "method", name)
+                        .register(meterRegistry));
+    }
+
+    private Timer timer(String repository, String method, String outcome) {
+        return Timer.builder("trading.repository.calls")
+                .description("Repository call latency")
+                .tags("repository", repository, "method", method, "outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static long rowsOf(Object result) {
+        if (result == null || result instanceof Boolean) return 0;
+        if (result instanceof Collection<?> collection) return collection.size();
+        if (result instanceof Map<?, ?> map) return map.size();
+        if (result instanceof Integer updated) return updated;
+        if (result instanceof int[] batch) {
+            // Drivers may report Statement.SUCCESS_NO_INFO (-2) for a batch entry whose count they do not know.
+            long rows = 0;
+            for (int updated : batch) {
+                rows += Math.max(updated, 0);
+            }
+            return rows;
+        }
+        return 1;
+    }
+
+    private record Meters(Timer success, Timer error, Counter rows) {
+    }
+}
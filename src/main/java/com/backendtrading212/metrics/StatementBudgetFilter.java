@@ -0,0 +1,107 @@
+package com.backendtrading212.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "trading.sql.budget.enabled", havingValue = "true")
+public class StatementBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementBudgetFilter.class);
+
+    static final String STATS_ATTRIBUTE = StatementStats.class.getName();
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${trading.sql.budget.max-statements:20}")
+    private int maxStatements;
+
+    @Value("${trading.sql.budget.repeated-shape-threshold:5}")
+    private int repeatedShapeThreshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        StatementStats stats = StatementStats.begin();
+        request.setAttribute(STATS_ATTRIBUTE, stats);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            stats.end();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String method = request.getMethod();
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            if (request.isAsyncStarted()) {
+                // Streaming bodies keep executing statements after this thread returns.
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        report(method, uri, stats);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                report(method, uri, stats);
+            }
+        }
+    }
+
+    private void report(String method, String uri, StatementStats stats) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+
+        if (registry != null) {
+            DistributionSummary.builder("trading.http.statements")
+                    .description("JDBC statements executed per HTTP request")
+                    .tags("method", method, "uri", uri)
+                    .register(registry)
+                    .record(stats.total());
+        }
+
+        if (stats.total() > maxStatements) {
+            budgetExceeded(registry, uri, "statements");
+            log.warn("{} {} executed {} statements (budget {})", method, uri, stats.total(), maxStatements);
+        }
+
+        Map<String, Integer> repeated = stats.repeatedShapes(repeatedShapeThreshold);
+        if (!repeated.isEmpty()) {
+            budgetExceeded(registry, uri, "repeated-shape");
+            log.warn("{} {} repeated statement shapes (possible N+1): {}", method, uri, repeated);
+        }
+    }
+
+    private static void budgetExceeded(MeterRegistry registry, String uri, String reason) {
+        if (registry != null) {
+            registry.counter("trading.http.statement-budget.exceeded", "uri", uri, "reason", reason).increment();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.backendtrading212.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+public final class StatementStats {
+
+    private static final ThreadLocal<StatementStats> CURRENT = new ThreadLocal<>();
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern STRING = Pattern.compile("'(?:[^']|'')*'");
+
+    private final StatementStats parent;
+    private final Map<String, Integer> shapes = new LinkedHashMap<>();
+    private int total;
+
+    private StatementStats(StatementStats parent) {
+        this.parent = parent;
+    }
+
+    public static StatementStats begin() {
+        StatementStats stats = new StatementStats(CURRENT.get());
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public void end() {
+        if (CURRENT.get() == this) {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+
+    // Wraps work handed to another thread so its statements count toward the stats current on the calling thread.
+    public static Runnable propagate(Runnable task) {
+        StatementStats stats = CURRENT.get();
+        if (stats == null) return task;
+        return () -> {
+            StatementStats previous = stats.attach();
+            try {
+                task.run();
+            } finally {
+                detach(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        StatementStats stats = CURRENT.get();
+        if (stats == null) return task;
+        return () -> {
+            StatementStats previous = stats.attach();
+            try {
+                return task.get();
+            } finally {
+                detach(previous);
+            }
+        };
+    }
+
+    // Makes these stats current on this thread without nesting, returning what was current before.
+    StatementStats attach() {
+        StatementStats previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    static void detach(StatementStats previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    static void record(String sql) {
+        StatementStats stats = CURRENT.get();
+        if (stats == null) return;
+
+        String shape = shapeOf(sql);
+        for (; stats != null; stats = stats.parent) {
+            synchronized (stats) {
+                stats.total++;
+                stats.shapes.merge(shape, 1, Integer::sum);
+            }
+        }
+    }
+
+    public synchronized int total() {
+        return total;
+    }
+
+    public synchronized Map<String, Integer> shapes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(shapes));
+    }
+
+    public synchronized Map<String, Integer> repeatedShapes(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        shapes.forEach((shape, count) -> {
+            if (count >= threshold) repeated.put(shape, count);
+        });
+        return repeated;
+    }
+
+    static String shapeOf(String sql) {
+        if (sql == null) return "";
+        String shape = STRING.matcher(sql).replaceAll("?");
+        shape = NUMBER.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        return IN_LIST.matcher(shape).replaceAll("(?...)");
+    }
+}
@@ -0,0 +1,43 @@
+package com.backendtrading212.metrics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+// StreamingResponseBody and Callable handlers run on the MVC task executor; this carries the request's
+// statement stats over to that thread so their statements count toward the request.
+@Configuration
+@ConditionalOnProperty(name = "trading.sql.budget.enabled", havingValue = "true")
+public class StatementStatsAsyncConfiguration implements WebMvcConfigurer {
+
+    private static final String PREVIOUS_ATTRIBUTE = StatementStats.class.getName() + ".previous";
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+                Object stats = request.getAttribute(StatementBudgetFilter.STATS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (stats instanceof StatementStats current) {
+                    StatementStats previous = current.attach();
+                    if (previous != null) {
+                        request.setAttribute(PREVIOUS_ATTRIBUTE, previous, RequestAttributes.SCOPE_REQUEST);
+                    }
+                }
+            }
+
+            @Override
+            public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object result) {
+                if (request.getAttribute(StatementBudgetFilter.STATS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+                    StatementStats.detach((StatementStats) request.getAttribute(PREVIOUS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,6 @@
+package com.backendtrading212.migration;
+
+import org.springframework.core.io.Resource;
+
+public record Migration(int version, String description, String checksum, Resource script) {
+}
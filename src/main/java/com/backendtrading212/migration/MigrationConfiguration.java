@@ -0,0 +1,24 @@
+package com.backendtrading212.migration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "trading.migrations.enabled", havingValue = "true", matchIfMissing = true)
+public class MigrationConfiguration {
+
+    @Value("${trading.migrations.location:classpath:db/migration}")
+    private String location;
+
+    @Value("${trading.migrations.baseline-version:1}")
+    private int baselineVersion;
+
+    @Bean(initMethod = "migrate")
+    public MigrationRunner migrationRunner(DataSource dataSource) {
+        return new MigrationRunner(dataSource, location, baselineVersion);
+    }
+}
@@ -0,0 +1,16 @@
+package com.backendtrading212.migration;
+
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+
+import java.util.Set;
+
+/**
+ * Makes JdbcTemplate and everything else that depends on database initialization wait for the migrations.
+ */
+public class MigrationInitializerDetector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+
+    @Override
+    protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+        return Set.of(MigrationRunner.class);
+    }
+}
@@ -0,0 +1,201 @@
+package com.backendtrading212.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned scripts under {@code location} (named {@code V<version>__<description>.sql}) in order,
+ * recording each one in {@code schema_migrations}. Startup fails if an applied script was edited afterwards.
+ */
+public class MigrationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MigrationRunner.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final String CREATE_HISTORY = """
+            CREATE TABLE IF NOT EXISTS schema_migrations (
+                version INT PRIMARY KEY,
+                description VARCHAR(200) NOT NULL,
+                checksum CHAR(64) NOT NULL,
+                applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                execution_ms BIGINT NOT NULL
+            )
+        """;
+
+    private static final String CREATE_LOCK = """
+            CREATE TABLE IF NOT EXISTS schema_migrations_lock (
+                id INT PRIMARY KEY
+            )
+        """;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final String location;
+    private final int baselineVersion;
+
+    /**
+     * @param baselineVersion version to record as already applied when the schema predates the runner
+     *                        (a {@code users} table exists but no history does); 0 disables baselining
+     */
+    public MigrationRunner(DataSource dataSource, String location, int baselineVersion) {
+        this.dataSource = dataSource;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.location = location;
+        this.baselineVersion = baselineVersion;
+    }
+
+    /**
+     * Runs while holding a row lock on {@code schema_migrations_lock}, so instances starting together apply each
+     * script once. The lock is held on its own connection because DDL commits the transaction of the connection
+     * that runs it.
+     */
+    public int migrate() {
+        List<Migration> migrations = load();
+        jdbc.execute(CREATE_LOCK);
+        jdbc.update("INSERT IGNORE INTO schema_migrations_lock (id) VALUES (1)");
+
+        return jdbc.execute((ConnectionCallback<Integer>) lock -> {
+            boolean autoCommit = lock.getAutoCommit();
+            lock.setAutoCommit(false);
+            try {
+                try (Statement select = lock.createStatement()) {
+                    select.executeQuery("SELECT id FROM schema_migrations_lock WHERE id = 1 FOR UPDATE").close();
+                }
+                return migrate(migrations);
+            } finally {
+                lock.rollback();
+                lock.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private int migrate(List<Migration> migrations) {
+        jdbc.execute(CREATE_HISTORY);
+
+        Map<Integer, String> applied = appliedChecksums();
+        if (applied.isEmpty() && baselineVersion > 0 && tableExists("users")) {
+            baseline(migrations);
+            applied = appliedChecksums();
+        }
+
+        int count = 0;
+        for (Migration migration : migrations) {
+            String checksum = applied.get(migration.version());
+            if (checksum == null) {
+                apply(migration);
+                count++;
+            } else if (!checksum.equals(migration.checksum())) {
+                throw new IllegalStateException("Migration V" + migration.version() + "__" + migration.description()
+                        + " was modified after it was applied (checksum " + checksum + ", now " + migration.checksum() + ")");
+            }
+        }
+
+        if (count > 0) {
+            log.info("Applied {} schema migration(s), schema is now at V{}", count, migrations.get(migrations.size() - 1).version());
+        }
+        return count;
+    }
+
+    List<Migration> load() {
+        Resource[] scripts;
+        try {
+            scripts = new PathMatchingResourcePatternResolver().getResources(location + "/V*__*.sql");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list migrations in " + location, e);
+        }
+
+        List<Migration> migrations = new ArrayList<>(scripts.length);
+        Map<Integer, String> seen = new HashMap<>();
+        for (Resource script : scripts) {
+            Matcher name = FILE_NAME.matcher(script.getFilename());
+            if (!name.matches()) {
+                throw new IllegalStateException("Migration " + script.getFilename() + " does not match V<version>__<description>.sql");
+            }
+            int version = Integer.parseInt(name.group(1));
+            if (seen.put(version, script.getFilename()) != null) {
+                throw new IllegalStateException("Duplicate migration version V" + version + ": "
+                        + seen.get(version) + ", " + script.getFilename());
+            }
+            migrations.add(new Migration(version, name.group(2), checksum(script), script));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        return migrations;
+    }
+
+    private void apply(Migration migration) {
+        log.info("Applying schema migration V{}__{}", migration.version(), migration.description());
+        long start = System.nanoTime();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(migration.script());
+        populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+        populator.execute(dataSource);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        record(migration, elapsedMs);
+    }
+
+    private void baseline(List<Migration> migrations) {
+        log.info("Existing schema found without migration history, baselining at V{}", baselineVersion);
+        for (Migration migration : migrations) {
+            if (migration.version() <= baselineVersion) {
+                record(migration, 0);
+            }
+        }
+    }
+
+    private void record(Migration migration, long elapsedMs) {
+        jdbc.update("INSERT INTO schema_migrations (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)",
+                migration.version(), migration.description(), migration.checksum(), elapsedMs);
+    }
+
+    private Map<Integer, String> appliedChecksums() {
+        Map<Integer, String> applied = new HashMap<>();
+        jdbc.query("SELECT version, checksum FROM schema_migrations", rs -> {
+            applied.put(rs.getInt("version"), rs.getString("checksum"));
+        });
+        return applied;
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbc.execute((ConnectionCallback<Boolean>) con -> {
+            try (ResultSet tables = con.getMetaData().getTables(con.getCatalog(), con.getSchema(), table, new String[]{"TABLE"})) {
+                return tables.next();
+            }
+        }));
+    }
+
+    // Line endings are normalised so a checkout on Windows does not look like an edited migration.
+    private static String checksum(Resource script) {
+        try (InputStream in = script.getInputStream()) {
+            String sql = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sql.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read migration " + script.getFilename(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.backendtrading212.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Column limits for prices and quantities, and the scaled-long forms kept by the order books and the journal.
+public final class FixedPoint {
+
+    public static final int PRICE_SCALE = 2;
+    public static final int QUANTITY_SCALE = 10;
+    public static final BigDecimal PRICE_MAX = new BigDecimal("9999999999999.99");
+    public static final BigDecimal QUANTITY_MAX = new BigDecimal("9999999999.9999999999");
+
+    // A long holds 10dp quantities only up to about 9.22e8 units, short of the DECIMAL(20, 10) column.
+    private static final BigDecimal UNITS_MAX = BigDecimal.valueOf(Long.MAX_VALUE, QUANTITY_SCALE);
+
+    private FixedPoint() {
+    }
+
+    // True when the value is stored in a DECIMAL(15, 2) price or balance column without rounding or overflow.
+    public static boolean isPrice(BigDecimal value) {
+        return fitsScale(value, PRICE_SCALE) && value.abs().compareTo(PRICE_MAX) <= 0;
+    }
+
+    // True when the value is stored in a DECIMAL(20, 10) quantity column without rounding or overflow.
+    public static boolean isQuantity(BigDecimal value) {
+        return fitsScale(value, QUANTITY_SCALE) && value.abs().compareTo(QUANTITY_MAX) <= 0;
+    }
+
+    public static boolean fitsUnits(BigDecimal quantity) {
+        return fitsScale(quantity, QUANTITY_SCALE) && quantity.abs().compareTo(UNITS_MAX) <= 0;
+    }
+
+    public static long cents(BigDecimal price) {
+        if (!isPrice(price)) {
+            throw new IllegalArgumentException("Price " + price.toPlainString() + " is not a whole number of cents in range");
+        }
+        return price.setScale(PRICE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static long units(BigDecimal quantity) {
+        if (!fitsUnits(quantity)) {
+            throw new IllegalArgumentException("Quantity " + quantity.toPlainString() + " does not fit in "
+                    + Long.SIZE + "-bit units of 1e-" + QUANTITY_SCALE);
+        }
+        return quantity.setScale(QUANTITY_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal ofCents(long cents) {
+        return BigDecimal.valueOf(cents, PRICE_SCALE);
+    }
+
+    public static BigDecimal ofUnits(long units) {
+        return BigDecimal.valueOf(units, QUANTITY_SCALE);
+    }
+
+    // Cash for a trade, rounded to the balance column as the database would otherwise do implicitly.
+    public static BigDecimal amount(BigDecimal price, BigDecimal quantity, RoundingMode mode) {
+        return price.multiply(quantity).setScale(PRICE_SCALE, mode);
+    }
+
+    private static boolean fitsScale(BigDecimal value, int scale) {
+        return value.scale() <= scale || value.stripTrailingZeros().scale() <= scale;
+    }
+}
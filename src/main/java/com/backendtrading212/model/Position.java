@@ -0,0 +1,19 @@
+package com.backendtrading212.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Position {
+    private int userId;
+    private String cryptoSymbol;
+    private BigDecimal boughtQty;
+    private BigDecimal boughtAmount;
+    private BigDecimal soldQty;
+    private BigDecimal soldAmount;
+}
@@ -13,4 +13,5 @@ public class User {
     private Long id;
     private String username;
     private BigDecimal balance;
+    private long version;
 }
@@ -2,52 +2,86 @@ package com.backendtrading212.repository;
 
 import com.backendtrading212.model.Holding;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class HoldingRepository {
 
+    private static final String UPSERT_LOT = """
+            INSERT INTO holdings(user_id, epoch, crypto_symbol, quantity, price)
+            VALUES (?, (SELECT u.epoch FROM users u WHERE u.id = ?), ?, ?, ?)
+            ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity)
+        """;
+
+    // Rows from before the owner's last reset stay behind until AccountPurgeJob removes them.
+    private static final String CURRENT_EPOCH = "epoch = (SELECT u.epoch FROM users u WHERE u.id = holdings.user_id)";
+
+    // Same filter for a single owner, whose id is bound twice. The epoch is looked up once rather than per row,
+    // so uq_holdings_lot (user_id, epoch, crypto_symbol, price) can seek on it.
+    private static final String OWNED_BY = "user_id = ? AND epoch = (SELECT u.epoch FROM users u WHERE u.id = ?)";
+
+    private static final RowMapper<Holding> DUST_GROUP = (rs, rowNum) -> Holding.builder()
+            .userId(rs.getInt(1)).cryptoSymbol(rs.getString(2)).build();
+
     @Autowired
     private JdbcTemplate jdbc;
 
     public void upsertHolding(Long userId, String symbol, BigDecimal quantity, BigDecimal price) {
-        jdbc.update("""
-        INSERT INTO holdings(user_id, crypto_symbol, quantity, price)
-        VALUES (?, ?, ?, ?)
-    """, userId, symbol, quantity, price);
+        jdbc.update(UPSERT_LOT, userId, userId, symbol, quantity, price);
+    }
+
+    public void upsertHoldings(List<Holding> lots) {
+        List<Object[]> batch = new ArrayList<>(lots.size());
+        for (Holding lot : lots) {
+            batch.add(new Object[]{lot.getUserId(), lot.getUserId(), lot.getCryptoSymbol(), lot.getQuantity(), lot.getPrice()});
+        }
+        jdbc.batchUpdate(UPSERT_LOT, batch);
     }
 
     public Holding getHoldingByUserIdAndSymbol(Long userId, String symbol) {
         List<Holding> results = jdbc.query(
-                "SELECT * FROM holdings WHERE user_id = ? AND crypto_symbol = ?",
-                new BeanPropertyRowMapper<>(Holding.class),
-                userId, symbol
+                "SELECT " + RowMappers.HOLDING_COLUMNS + " FROM holdings WHERE " + OWNED_BY + " AND crypto_symbol = ?",
+                RowMappers.HOLDING,
+                userId, userId, symbol
         );
         return results.isEmpty() ? null : results.get(0);
     }
 
     public void updateHoldingQuantity(Long userId, String symbol, BigDecimal quantity) {
-        jdbc.update("UPDATE holdings SET quantity = ? WHERE user_id = ? AND crypto_symbol = ?", quantity, userId, symbol);
+        jdbc.update("UPDATE holdings SET quantity = ? WHERE " + OWNED_BY + " AND crypto_symbol = ?", quantity, userId, userId, symbol);
     }
 
     public void deleteHolding(Long userId, String symbol) {
-        jdbc.update("DELETE FROM holdings WHERE user_id = ? AND crypto_symbol = ?", userId, symbol);
+        jdbc.update("DELETE FROM holdings WHERE " + OWNED_BY + " AND crypto_symbol = ?", userId, userId, symbol);
     }
 
     public List<Holding> getHoldingsByUserId(Long userId) {
-        return jdbc.query("SELECT * FROM holdings WHERE user_id = ?", new BeanPropertyRowMapper<>(Holding.class), userId);
+        return jdbc.query("SELECT " + RowMappers.HOLDING_COLUMNS + " FROM holdings WHERE " + OWNED_BY, RowMappers.HOLDING, userId, userId);
     }
 
     public List<Holding> getHoldingsByUserIdAndSymbolOrderedByPrice(Long userId, String symbol) {
         return jdbc.query(
-                "SELECT * FROM holdings WHERE user_id = ? AND crypto_symbol = ? ORDER BY price ASC",
-                new BeanPropertyRowMapper<>(Holding.class),
-                userId, symbol
+                "SELECT " + RowMappers.HOLDING_COLUMNS + " FROM holdings WHERE " + OWNED_BY + " AND crypto_symbol = ? ORDER BY price ASC",
+                RowMappers.HOLDING,
+                userId, userId, symbol
+        );
+    }
+
+    public List<Holding> getHoldingsByUserIdsOrderedByPrice(Collection<Long> userIds) {
+        String placeholders = String.join(", ", Collections.nCopies(userIds.size(), "?"));
+        return jdbc.query(
+                "SELECT " + RowMappers.HOLDING_COLUMNS + " FROM holdings WHERE user_id IN (" + placeholders + ") AND " + CURRENT_EPOCH + " ORDER BY user_id, crypto_symbol, price ASC",
+                RowMappers.HOLDING,
+                userIds.toArray()
         );
     }
 
@@ -59,5 +93,36 @@ public class HoldingRepository {
         jdbc.update("UPDATE holdings SET quantity = ? WHERE id = ?", quantity, holdingId);
     }
 
-}
+    public void deleteHoldingsByIds(List<Long> holdingIds) {
+        String placeholders = String.join(", ", Collections.nCopies(holdingIds.size(), "?"));
+        jdbc.update("DELETE FROM holdings WHERE id IN (" + placeholders + ")", holdingIds.toArray());
+    }
+
+    public void updateHoldingQuantities(Map<Long, BigDecimal> quantitiesById) {
+        List<Object[]> batch = new ArrayList<>(quantitiesById.size());
+        quantitiesById.forEach((id, quantity) -> batch.add(new Object[]{quantity, id}));
+        jdbc.batchUpdate("UPDATE holdings SET quantity = ? WHERE id = ?", batch);
+    }
 
+    // Bounded to a range of owners so the scan seeks on user_id instead of reading the whole table.
+    public List<Holding> findDustLotGroups(Long fromUserId, Long toUserId, BigDecimal threshold) {
+        return jdbc.query("SELECT user_id, crypto_symbol FROM holdings WHERE user_id BETWEEN ? AND ?"
+                + " AND quantity < ? AND price IS NOT NULL AND " + CURRENT_EPOCH
+                + " GROUP BY user_id, crypto_symbol HAVING COUNT(*) > 1", DUST_GROUP, fromUserId, toUserId, threshold);
+    }
+
+    public List<Holding> lockDustLots(Long userId, String symbol, BigDecimal threshold) {
+        return jdbc.query(
+                "SELECT " + RowMappers.HOLDING_COLUMNS + " FROM holdings WHERE " + OWNED_BY + " AND crypto_symbol = ? AND quantity < ? AND price IS NOT NULL ORDER BY id FOR UPDATE",
+                RowMappers.HOLDING,
+                userId, userId, symbol, threshold
+        );
+    }
+
+    public int purgeStaleHoldings(Long userId, int epoch, int limit) {
+        List<Long> ids = jdbc.queryForList("SELECT id FROM holdings WHERE user_id = ? AND epoch < ? LIMIT ?", Long.class, userId, epoch, limit);
+        if (ids.isEmpty()) return 0;
+        deleteHoldingsByIds(ids);
+        return ids.size();
+    }
+}
@@ -0,0 +1,25 @@
+package com.backendtrading212.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public class LedgerDeadLetterRepository {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    public void insert(String username, String operation, String symbol, BigDecimal price, BigDecimal quantity,
+                       Long journalSequence, String error) {
+        String message = error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+        jdbc.update("""
+                INSERT INTO ledger_dead_letters(username, operation, crypto_symbol, price, quantity, journal_seq, error)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+            """, username, operation, symbol, price, quantity, journalSequence, message);
+    }
+}
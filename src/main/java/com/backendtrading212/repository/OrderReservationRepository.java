@@ -0,0 +1,88 @@
+package com.backendtrading212.repository;
+
+import com.backendtrading212.model.Holding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class OrderReservationRepository {
+
+    private static final String INSERT = """
+            INSERT INTO order_reservations(order_id, user_id, epoch, crypto_symbol, quantity, price, cash)
+            VALUES (?, ?, (SELECT u.epoch FROM users u WHERE u.id = ?), ?, ?, ?, ?)
+        """;
+
+    // Reservations made before the owner's last reset are dropped rather than returned into the new account.
+    private static final String CURRENT_EPOCH =
+            "epoch = (SELECT u.epoch FROM users u WHERE u.id = order_reservations.user_id)";
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    public void reserveCash(long orderId, Long userId, String symbol, BigDecimal cash) {
+        jdbc.update(INSERT, orderId, userId, userId, symbol, BigDecimal.ZERO, null, cash);
+    }
+
+    public void reserveLots(long orderId, List<Holding> lots) {
+        List<Object[]> batch = new ArrayList<>(lots.size());
+        for (Holding lot : lots) {
+            batch.add(new Object[]{orderId, lot.getUserId(), lot.getUserId(), lot.getCryptoSymbol(),
+                    lot.getQuantity(), lot.getPrice(), BigDecimal.ZERO});
+        }
+        jdbc.batchUpdate(INSERT, batch);
+    }
+
+    public List<Holding> findLots(long orderId) {
+        return jdbc.query(
+                "SELECT " + RowMappers.HOLDING_COLUMNS + " FROM order_reservations"
+                        + " WHERE order_id = ? AND quantity > 0 AND " + CURRENT_EPOCH + " ORDER BY price ASC, id ASC",
+                RowMappers.HOLDING,
+                orderId
+        );
+    }
+
+    public BigDecimal findCash(long orderId) {
+        return jdbc.queryForObject(
+                "SELECT COALESCE(SUM(cash), 0) FROM order_reservations WHERE order_id = ? AND " + CURRENT_EPOCH,
+                BigDecimal.class,
+                orderId
+        );
+    }
+
+    // False when the order holds no cash from the owner's current epoch, so nothing may be drawn on it.
+    public boolean adjustCash(long orderId, BigDecimal amount) {
+        return jdbc.update("UPDATE order_reservations SET cash = cash + ? WHERE order_id = ? AND " + CURRENT_EPOCH,
+                amount, orderId) > 0;
+    }
+
+    public void deleteLotsByIds(List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbc.update("DELETE FROM order_reservations WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+
+    public void updateLotQuantities(Map<Long, BigDecimal> quantitiesById) {
+        List<Object[]> batch = new ArrayList<>(quantitiesById.size());
+        quantitiesById.forEach((id, quantity) -> batch.add(new Object[]{quantity, id}));
+        jdbc.batchUpdate("UPDATE order_reservations SET quantity = ? WHERE id = ?", batch);
+    }
+
+    public void deleteOrder(long orderId) {
+        jdbc.update("DELETE FROM order_reservations WHERE order_id = ?", orderId);
+    }
+
+    // Owner of every order that still holds a reservation.
+    public Map<Long, Long> findOrderOwners() {
+        Map<Long, Long> owners = new LinkedHashMap<>();
+        jdbc.query("SELECT DISTINCT order_id, user_id FROM order_reservations ORDER BY order_id",
+                rs -> { owners.put(rs.getLong(1), rs.getLong(2)); });
+        return owners;
+    }
+}
@@ -0,0 +1,77 @@
+package com.backendtrading212.repository;
+
+import com.backendtrading212.model.Position;
+import com.backendtrading212.model.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class PositionRepository {
+
+    private static final String APPLY_TRADE = """
+            INSERT INTO positions (user_id, epoch, crypto_symbol, bought_qty, bought_amount, sold_qty, sold_amount)
+            VALUES (?, (SELECT u.epoch FROM users u WHERE u.id = ?), ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                bought_qty = bought_qty + VALUES(bought_qty),
+                bought_amount = bought_amount + VALUES(bought_amount),
+                sold_qty = sold_qty + VALUES(sold_qty),
+                sold_amount = sold_amount + VALUES(sold_amount)
+        """;
+
+    // Binds the owner's id twice.
+    private static final String OWNED_BY = "user_id = ? AND epoch = (SELECT u.epoch FROM users u WHERE u.id = ?)";
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    public void applyTrade(Long userId, String symbol, BigDecimal qty, BigDecimal price, String type) {
+        jdbc.update(APPLY_TRADE, tradeArgs(userId, symbol, qty, price, type));
+    }
+
+    public void applyTrades(List<Transaction> trades) {
+        List<Object[]> batch = new ArrayList<>(trades.size());
+        for (Transaction trade : trades) {
+            batch.add(tradeArgs((long) trade.getUserId(), trade.getCryptoSymbol(), trade.getQuantity(), trade.getPrice(), trade.getType()));
+        }
+        jdbc.batchUpdate(APPLY_TRADE, batch);
+    }
+
+    private static Object[] tradeArgs(Long userId, String symbol, BigDecimal qty, BigDecimal price, String type) {
+        boolean buy = "BUY".equalsIgnoreCase(type);
+        BigDecimal amount = qty.multiply(price);
+
+        return new Object[]{userId, userId, symbol,
+                buy ? qty : BigDecimal.ZERO, buy ? amount : BigDecimal.ZERO,
+                buy ? BigDecimal.ZERO : qty, buy ? BigDecimal.ZERO : amount};
+    }
+
+    public List<Position> getPositionsByUserId(Long userId) {
+        return jdbc.query("SELECT " + RowMappers.POSITION_COLUMNS + " FROM positions WHERE " + OWNED_BY + " ORDER BY crypto_symbol",
+                RowMappers.POSITION, userId, userId);
+    }
+
+    public void rebuildPositions(Long userId) {
+        int epoch = jdbc.queryForObject("SELECT epoch FROM users WHERE id = ? FOR UPDATE", Integer.class, userId);
+        jdbc.update("DELETE FROM positions WHERE user_id = ? AND epoch = ?", userId, epoch);
+        jdbc.update("""
+            INSERT INTO positions (user_id, epoch, crypto_symbol, bought_qty, bought_amount, sold_qty, sold_amount)
+            SELECT user_id, epoch, crypto_symbol,
+                   COALESCE(SUM(CASE WHEN type = 'BUY' THEN quantity END), 0),
+                   COALESCE(SUM(CASE WHEN type = 'BUY' THEN quantity * price END), 0),
+                   COALESCE(SUM(CASE WHEN type = 'SELL' THEN quantity END), 0),
+                   COALESCE(SUM(CASE WHEN type = 'SELL' THEN quantity * price END), 0)
+            FROM transactions
+            WHERE user_id = ? AND epoch = ?
+            GROUP BY user_id, epoch, crypto_symbol
+        """, userId, epoch);
+    }
+
+    public int purgeStalePositions(Long userId, int epoch) {
+        return jdbc.update("DELETE FROM positions WHERE user_id = ? AND epoch < ?", userId, epoch);
+    }
+}
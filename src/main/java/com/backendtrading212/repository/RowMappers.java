@@ -0,0 +1,55 @@
+package com.backendtrading212.repository;
+
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.model.Position;
+import com.backendtrading212.model.Transaction;
+import com.backendtrading212.model.User;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Column lists and the row mappers that read them by position. A mapper is only valid for a query
+ * that selects its matching column list, in that order.
+ */
+public final class RowMappers {
+
+    public static final String USER_COLUMNS = "id, username, balance, version";
+
+    public static final RowMapper<User> USER = (rs, rowNum) -> new User(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getBigDecimal(3),
+            rs.getLong(4));
+
+    public static final String HOLDING_COLUMNS = "id, user_id, crypto_symbol, quantity, price";
+
+    public static final RowMapper<Holding> HOLDING = (rs, rowNum) -> new Holding(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getString(3),
+            rs.getBigDecimal(4),
+            rs.getBigDecimal(5));
+
+    public static final String TRANSACTION_COLUMNS = "id, user_id, crypto_symbol, quantity, price, type, timestamp";
+
+    public static final RowMapper<Transaction> TRANSACTION = (rs, rowNum) -> new Transaction(
+            rs.getInt(1),
+            rs.getInt(2),
+            rs.getString(3),
+            rs.getBigDecimal(4),
+            rs.getBigDecimal(5),
+            rs.getString(6),
+            rs.getTimestamp(7));
+
+    public static final String POSITION_COLUMNS = "user_id, crypto_symbol, bought_qty, bought_amount, sold_qty, sold_amount";
+
+    public static final RowMapper<Position> POSITION = (rs, rowNum) -> new Position(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getBigDecimal(3),
+            rs.getBigDecimal(4),
+            rs.getBigDecimal(5),
+            rs.getBigDecimal(6));
+
+    private RowMappers() {
+    }
+}
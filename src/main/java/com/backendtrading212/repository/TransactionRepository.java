@@ -1,45 +1,227 @@
 package com.backendtrading212.repository;
 
+import com.backendtrading212.datasource.ReplicaRoutingDataSource;
+import com.backendtrading212.dto.TransactionQuery;
 import com.backendtrading212.model.Transaction;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Repository
 public class TransactionRepository {
 
+    private static final String UPSERT_LAST_TRADE_PRICE = """
+            INSERT INTO last_trade_price (crypto_symbol, price, traded_at) VALUES (?, ?, NOW())
+            ON DUPLICATE KEY UPDATE price = VALUES(price), traded_at = VALUES(traded_at)
+        """;
+
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transactions (user_id, epoch, crypto_symbol, quantity, price, type, timestamp)
+            VALUES (?, (SELECT u.epoch FROM users u WHERE u.id = ?), ?, ?, ?, ?, NOW())
+        """;
+
+    // Binds the owner's id twice; see HoldingRepository.OWNED_BY.
+    private static final String OWNED_BY = "user_id = ? AND epoch = (SELECT u.epoch FROM users u WHERE u.id = ?)";
+
     @Autowired
     private JdbcTemplate jdbc;
 
-    public List<Transaction> getTransactionsByUsername(String username) {
-        return jdbc.query(
-                "SELECT * FROM transactions WHERE user_id = (SELECT id FROM users WHERE username = ?) ORDER BY timestamp DESC",
-                new BeanPropertyRowMapper<>(Transaction.class),
-                username
-        );
+    @Autowired
+    private PositionRepository positionRepo;
+
+    @Value("${trading.transactions.stream-fetch-size:500}")
+    private int streamFetchSize;
+
+    private JdbcTemplate streamingJdbc;
+
+    private final Map<String, BigDecimal> latestPrices = new ConcurrentHashMap<>();
+    private final AtomicLong priceGeneration = new AtomicLong();
+
+    @PostConstruct
+    void initStreamingTemplate() {
+        streamingJdbc = new JdbcTemplate(jdbc.getDataSource());
+        streamingJdbc.setFetchSize(streamFetchSize);
+    }
+
+    public List<Transaction> findTransactions(TransactionQuery query) {
+        List<Object> args = new ArrayList<>();
+        String sql = selectTransactions(query, args) + " LIMIT ?";
+        args.add(query.getLimit());
+        return jdbc.query(sql, RowMappers.TRANSACTION, args.toArray());
+    }
+
+    public void streamTransactions(TransactionQuery query, Consumer<Transaction> sink) {
+        List<Object> args = new ArrayList<>();
+        streamingJdbc.query(selectTransactions(query, args),
+                rs -> {
+                    sink.accept(RowMappers.TRANSACTION.mapRow(rs, rs.getRow()));
+                }, args.toArray());
+    }
+
+    private String selectTransactions(TransactionQuery query, List<Object> args) {
+        StringBuilder sql = new StringBuilder("SELECT " + RowMappers.TRANSACTION_COLUMNS + " FROM transactions WHERE " + OWNED_BY);
+        args.add(query.getUserId());
+        args.add(query.getUserId());
+
+        if (query.getSymbol() != null) {
+            sql.append(" AND crypto_symbol = ?");
+            args.add(query.getSymbol());
+        }
+        if (query.getType() != null) {
+            sql.append(" AND type = ?");
+            args.add(query.getType().toUpperCase());
+        }
+        if (query.getFrom() != null) {
+            sql.append(" AND timestamp >= ?");
+            args.add(query.getFrom());
+        }
+        if (query.getTo() != null) {
+            sql.append(" AND timestamp < ?");
+            args.add(query.getTo());
+        }
+        if (query.getAfterTimestamp() != null) {
+            sql.append(" AND (timestamp < ? OR (timestamp = ? AND id < ?))");
+            args.add(query.getAfterTimestamp());
+            args.add(query.getAfterTimestamp());
+            args.add(query.getAfterId());
+        }
+
+        return sql.append(" ORDER BY timestamp DESC, id DESC").toString();
     }
 
     public void insertTransaction(Long userId, String symbol, BigDecimal qty, BigDecimal price, String type) {
-        jdbc.update(
-                "INSERT INTO transactions (user_id, crypto_symbol, quantity, price, type, timestamp) VALUES (?, ?, ?, ?, ?, NOW())",
-                userId, symbol, qty, price, type
-        );
+        jdbc.update(INSERT_TRANSACTION, userId, userId, symbol, qty, price, type);
+        recordTrade(userId, symbol, qty, price, type);
+    }
+
+    public void insertTransactions(Long userId, String symbol, List<BigDecimal> quantities, BigDecimal price, String type) {
+        if (quantities.isEmpty()) return;
+
+        List<Object[]> batch = new ArrayList<>(quantities.size());
+        BigDecimal totalQty = BigDecimal.ZERO;
+        for (BigDecimal qty : quantities) {
+            batch.add(new Object[]{userId, userId, symbol, qty, price, type});
+            totalQty = totalQty.add(qty);
+        }
+
+        jdbc.batchUpdate(INSERT_TRANSACTION, batch);
+        recordTrade(userId, symbol, totalQty, price, type);
+    }
+
+    public void insertTransactions(List<Transaction> trades) {
+        if (trades.isEmpty()) return;
+
+        List<Object[]> batch = new ArrayList<>(trades.size());
+        Map<String, BigDecimal> lastPrices = new LinkedHashMap<>();
+        for (Transaction trade : trades) {
+            batch.add(new Object[]{trade.getUserId(), trade.getUserId(), trade.getCryptoSymbol(), trade.getQuantity(), trade.getPrice(), trade.getType()});
+            lastPrices.put(trade.getCryptoSymbol(), trade.getPrice());
+        }
+
+        jdbc.batchUpdate(INSERT_TRANSACTION, batch);
+        positionRepo.applyTrades(trades);
+
+        List<Object[]> prices = new ArrayList<>(lastPrices.size());
+        lastPrices.forEach((symbol, price) -> prices.add(new Object[]{symbol, price}));
+        jdbc.batchUpdate(UPSERT_LAST_TRADE_PRICE, prices);
+        lastPrices.keySet().forEach(this::invalidateLatestPrice);
+    }
+
+    private void recordTrade(Long userId, String symbol, BigDecimal qty, BigDecimal price, String type) {
+        positionRepo.applyTrade(userId, symbol, qty, price, type);
+        jdbc.update(UPSERT_LAST_TRADE_PRICE, symbol, price);
+        invalidateLatestPrice(symbol);
     }
 
     public List<Transaction> getTransactionsByUserId(Long userId) {
-        return jdbc.query("SELECT * FROM transactions WHERE user_id = ?",
-                new BeanPropertyRowMapper<>(Transaction.class), userId);
+        return jdbc.query("SELECT " + RowMappers.TRANSACTION_COLUMNS + " FROM transactions WHERE " + OWNED_BY,
+                RowMappers.TRANSACTION, userId, userId);
+    }
+
+    public int purgeStaleTransactions(Long userId, int epoch, int limit) {
+        List<Long> ids = jdbc.queryForList("SELECT id FROM transactions WHERE user_id = ? AND epoch < ? LIMIT ?", Long.class, userId, epoch, limit);
+        if (ids.isEmpty()) return 0;
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return jdbc.update("DELETE FROM transactions WHERE id IN (" + placeholders + ")", ids.toArray());
     }
 
     public BigDecimal getLatestPriceForSymbol(String symbol) {
-        List<Transaction> tx = jdbc.query(
-                "SELECT * FROM transactions WHERE crypto_symbol = ? ORDER BY timestamp DESC LIMIT 1",
-                new BeanPropertyRowMapper<>(Transaction.class), symbol
-        );
-        return tx.isEmpty() ? null : tx.get(0).getPrice();
+        return getLatestPrices(List.of(symbol)).get(symbol);
+    }
+
+    public Map<String, BigDecimal> getLatestPrices(Collection<String> symbols) {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String symbol : symbols) {
+            BigDecimal cached = latestPrices.get(symbol);
+            if (cached != null) {
+                prices.put(symbol, cached);
+            } else {
+                missing.add(symbol);
+            }
+        }
+
+        if (missing.isEmpty()) return prices;
+
+        long generation = priceGeneration.get();
+        String placeholders = String.join(", ", Collections.nCopies(missing.size(), "?"));
+        jdbc.query("SELECT crypto_symbol, price FROM last_trade_price WHERE crypto_symbol IN (" + placeholders + ")",
+                rs -> {
+                    prices.put(rs.getString("crypto_symbol"), rs.getBigDecimal("price"));
+                }, missing.toArray());
+
+        // The cache is shared by every reader, so a lagging replica's answer is returned but never kept.
+        if (priceGeneration.get() == generation && ReplicaRoutingDataSource.readsPrimary()) {
+            for (String symbol : missing) {
+                BigDecimal price = prices.get(symbol);
+                if (price != null) latestPrices.put(symbol, price);
+            }
+        }
+        return prices;
+    }
+
+    public void rebuildLastTradePrices() {
+        jdbc.update("""
+            INSERT INTO last_trade_price (crypto_symbol, price, traded_at)
+            SELECT t.crypto_symbol, t.price, t.timestamp
+            FROM transactions t
+            WHERE t.id = (SELECT l.id FROM transactions l WHERE l.crypto_symbol = t.crypto_symbol
+                          ORDER BY l.timestamp DESC, l.id DESC LIMIT 1)
+            ON DUPLICATE KEY UPDATE price = VALUES(price), traded_at = VALUES(traded_at)
+        """);
+        priceGeneration.incrementAndGet();
+        latestPrices.clear();
+    }
+
+    private void invalidateLatestPrice(String symbol) {
+        priceGeneration.incrementAndGet();
+        latestPrices.remove(symbol);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    priceGeneration.incrementAndGet();
+                    latestPrices.remove(symbol);
+                }
+            });
+        }
     }
 }
@@ -1,30 +1,143 @@
 package com.backendtrading212.repository;
 
 import com.backendtrading212.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 @Repository
 public class UserRepository {
     @Autowired
     private JdbcTemplate jdbc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.users.id-cache.max-size:100000}")
+    private long idCacheMaxSize;
+
+    @Value("${trading.users.id-cache.expire-after-write:10m}")
+    private Duration idCacheTtl;
+
+    private Cache<String, Long> userIds;
+
+    @PostConstruct
+    void initIdCache() {
+        userIds = Caffeine.newBuilder()
+                .maximumSize(idCacheMaxSize)
+                .expireAfterWrite(idCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, userIds, "users.id");
+    }
+
     public User findByUsername(String username) {
-        return jdbc.queryForObject("SELECT * FROM users WHERE username = ?",
-                new BeanPropertyRowMapper<>(User.class), username);
+        return jdbc.queryForObject("SELECT " + RowMappers.USER_COLUMNS + " FROM users WHERE username = ?",
+                RowMappers.USER, username);
+    }
+
+    public Long findIdByUsername(String username) {
+        return userIds.get(username, name ->
+                jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, name));
     }
 
-    public void resetBalance(String username) {
-        jdbc.update("UPDATE users SET balance = 10000.00 WHERE username = ?", username);
-        jdbc.update("DELETE FROM holdings WHERE user_id = (SELECT id FROM users WHERE username = ?)", username);
-        jdbc.update("DELETE FROM transactions WHERE user_id = (SELECT id FROM users WHERE username = ?)", username);
+    public User findById(Long userId) {
+        return jdbc.queryForObject("SELECT " + RowMappers.USER_COLUMNS + " FROM users WHERE id = ?",
+                RowMappers.USER, userId);
+    }
+
+    public List<User> findByIds(Collection<Long> userIds) {
+        String placeholders = String.join(", ", Collections.nCopies(userIds.size(), "?"));
+        return jdbc.query("SELECT " + RowMappers.USER_COLUMNS + " FROM users WHERE id IN (" + placeholders + ")",
+                RowMappers.USER, userIds.toArray());
+    }
+
+    public BigDecimal findBalanceById(Long userId) {
+        return jdbc.queryForObject("SELECT balance FROM users WHERE id = ?", BigDecimal.class, userId);
+    }
+
+    // Holdings, transactions and positions are scoped to the current epoch; AccountPurgeJob deletes the old ones later.
+    @Transactional
+    public void resetBalance(Long userId) {
+        jdbc.update("UPDATE users SET balance = 10000.00, version = version + 1, epoch = epoch + 1 WHERE id = ?", userId);
+        jdbc.update("""
+                INSERT INTO pending_purges(user_id, epoch) VALUES (?, (SELECT u.epoch FROM users u WHERE u.id = ?))
+                ON DUPLICATE KEY UPDATE epoch = VALUES(epoch)
+            """, userId, userId);
     }
 
     public void updateBalance(Long userId, BigDecimal amount) {
-        jdbc.update("UPDATE users SET balance = ? WHERE id = ?", amount, userId);
+        jdbc.update("UPDATE users SET balance = ?, version = version + 1 WHERE id = ?", amount, userId);
+    }
+
+    public boolean debitBalance(Long userId, BigDecimal amount) {
+        return jdbc.update("""
+                UPDATE users SET balance = balance - ?, version = version + 1
+                WHERE id = ? AND balance >= ?
+            """, amount, userId, amount) == 1;
+    }
+
+    public void adjustBalance(Long userId, BigDecimal amount) {
+        jdbc.update("UPDATE users SET balance = balance + ?, version = version + 1 WHERE id = ?", amount, userId);
+    }
+
+    public boolean creditBalance(Long userId, BigDecimal amount, long expectedVersion) {
+        return jdbc.update("""
+                UPDATE users SET balance = balance + ?, version = version + 1
+                WHERE id = ? AND version = ?
+            """, amount, userId, expectedVersion) == 1;
+    }
+
+    public void bumpVersion(Long userId) {
+        jdbc.update("UPDATE users SET version = version + 1 WHERE id = ?", userId);
+    }
+
+    public boolean creditBalances(Map<Long, BigDecimal> amounts, Map<Long, Long> expectedVersions) {
+        List<Object[]> batch = new ArrayList<>(amounts.size());
+        amounts.forEach((userId, amount) -> batch.add(new Object[]{amount, userId, expectedVersions.get(userId)}));
+
+        int[] counts = jdbc.batchUpdate("""
+                UPDATE users SET balance = balance + ?, version = version + 1
+                WHERE id = ? AND version = ?
+            """, batch);
+        return Arrays.stream(counts).noneMatch(count -> count == 0);
+    }
+
+    public boolean advanceJournal(Long userId, BigDecimal amount, long sequence) {
+        return jdbc.update("""
+                UPDATE users SET balance = balance + ?, version = version + 1, journal_seq = ?
+                WHERE id = ? AND journal_seq < ?
+            """, amount, sequence, userId, sequence) == 1;
+    }
+
+    public List<Map<String, Object>> findUnpurgedEpochs(int limit) {
+        return jdbc.queryForList("SELECT user_id AS id, epoch FROM pending_purges ORDER BY user_id LIMIT ?", limit);
+    }
+
+    // A reset made while the purge ran has moved the queued epoch on, so its entry stays for the next run.
+    @Transactional
+    public void markPurged(Long userId, int epoch) {
+        jdbc.update("UPDATE users SET purged_epoch = ? WHERE id = ? AND purged_epoch < ?", epoch, userId, epoch);
+        jdbc.update("DELETE FROM pending_purges WHERE user_id = ? AND epoch <= ?", userId, epoch);
+    }
+
+    public List<Long> getUserIdsAfter(Long afterUserId, int limit) {
+        return jdbc.queryForList("SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?", Long.class, afterUserId, limit);
     }
 }
@@ -0,0 +1,357 @@
+package com.backendtrading212.service;
+
+import com.backendtrading212.datasource.ReadRouting;
+import com.backendtrading212.dto.BatchTradeRequest;
+import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.dto.TradeResult;
+import com.backendtrading212.exception.InsufficientBalanceException;
+import com.backendtrading212.exception.InsufficientHoldingsException;
+import com.backendtrading212.exception.InvalidTradeException;
+import com.backendtrading212.ledger.LedgerEngine;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.model.Transaction;
+import com.backendtrading212.model.User;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import com.backendtrading212.stream.TradeCommittedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+public class BatchTradingService {
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private HoldingRepository holdingRepo;
+    @Autowired
+    private TransactionRepository transactionRepo;
+    @Autowired
+    private TradingService tradingService;
+    @Autowired
+    private TradeRetryPolicy retryPolicy;
+    @Autowired(required = false)
+    private LedgerEngine ledger;
+    @Autowired(required = false)
+    private ReadRouting readRouting;
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Value("${trading.batch.max-size:500}")
+    private int maxBatchSize;
+
+    public List<TradeResult> submit(BatchTradeRequest batch) {
+        List<TradeRequest> trades = batch.getTrades();
+        if (trades == null || trades.isEmpty()) {
+            throw new InvalidTradeException("Batch contains no trades");
+        }
+        if (trades.size() > maxBatchSize) {
+            throw new InvalidTradeException("Batch of " + trades.size() + " trades exceeds the limit of " + maxBatchSize);
+        }
+
+        if (ledger != null) {
+            if (batch.isAllOrNothing()) {
+                throw new InvalidTradeException("All-or-nothing batches are not supported while the ledger is enabled");
+            }
+            return submitEach(trades);
+        }
+
+        AtomicReference<List<TradeResult>> results = new AtomicReference<>();
+        retryPolicy.execute(() -> results.set(executeBatch(trades, batch.isAllOrNothing())));
+        for (TradeResult result : results.get()) {
+            if (result.getStatus() == TradeResult.Status.FILLED) {
+                TradeRequest trade = trades.get(result.getIndex());
+                if (readRouting != null) {
+                    readRouting.recordWrite(trade.getUsername());
+                }
+                events.publishEvent(new TradeCommittedEvent(trade.getUsername(), isBuy(trade) ? "BUY" : "SELL",
+                        trade.getSymbol(), trade.getPrice(), trade.getQuantity()));
+            }
+        }
+        return results.get();
+    }
+
+    private List<TradeResult> submitEach(List<TradeRequest> trades) {
+        List<TradeResult> results = new ArrayList<>(trades.size());
+        for (int i = 0; i < trades.size(); i++) {
+            TradeRequest trade = trades.get(i);
+            try {
+                if (isBuy(trade)) {
+                    tradingService.buy(trade.getUsername(), trade.getSymbol(), trade.getPrice(), trade.getQuantity());
+                } else {
+                    tradingService.sell(trade.getUsername(), trade.getSymbol(), trade.getPrice(), trade.getQuantity());
+                }
+                results.add(result(i, TradeResult.Status.FILLED, null));
+            } catch (InsufficientBalanceException | InsufficientHoldingsException | InvalidTradeException e) {
+                results.add(result(i, TradeResult.Status.REJECTED, reason(e)));
+            } catch (EmptyResultDataAccessException e) {
+                results.add(result(i, TradeResult.Status.REJECTED, "Invalid trade: Unknown user " + trade.getUsername()));
+            }
+        }
+        return results;
+    }
+
+    private List<TradeResult> executeBatch(List<TradeRequest> trades, boolean allOrNothing) {
+        Map<String, Long> userIds = resolveUserIds(trades);
+        Map<Long, Account> accounts = loadAccounts(userIds);
+
+        List<TradeResult> results = new ArrayList<>(trades.size());
+        List<Transaction> fills = new ArrayList<>();
+        boolean rejected = false;
+
+        for (int i = 0; i < trades.size(); i++) {
+            TradeRequest trade = trades.get(i);
+            try {
+                boolean buy = isBuy(trade);
+                Long userId = userIds.get(trade.getUsername());
+                Account account = userId == null ? null : accounts.get(userId);
+                if (account == null) {
+                    throw new InvalidTradeException("Unknown user " + trade.getUsername());
+                }
+
+                if (buy) {
+                    fills.add(account.buy(trade.getSymbol(), trade.getPrice(), trade.getQuantity()));
+                } else {
+                    fills.addAll(account.sell(trade.getSymbol(), trade.getPrice(), trade.getQuantity()));
+                }
+                results.add(result(i, TradeResult.Status.FILLED, null));
+            } catch (InsufficientBalanceException | InsufficientHoldingsException | InvalidTradeException e) {
+                results.add(result(i, TradeResult.Status.REJECTED, reason(e)));
+                rejected = true;
+            }
+        }
+
+        if (allOrNothing && rejected) {
+            for (TradeResult result : results) {
+                if (result.getStatus() == TradeResult.Status.FILLED) {
+                    result.setStatus(TradeResult.Status.ABORTED);
+                    result.setMessage("Not executed: another trade in the batch was rejected");
+                }
+            }
+            return results;
+        }
+
+        persist(accounts.values(), fills);
+        return results;
+    }
+
+    private Map<String, Long> resolveUserIds(List<TradeRequest> trades) {
+        Map<String, Long> userIds = new HashMap<>();
+        for (TradeRequest trade : trades) {
+            String username = trade.getUsername();
+            if (username == null || userIds.containsKey(username)) continue;
+            try {
+                userIds.put(username, userRepo.findIdByUsername(username));
+            } catch (EmptyResultDataAccessException e) {
+                userIds.put(username, null);
+            }
+        }
+        return userIds;
+    }
+
+    private Map<Long, Account> loadAccounts(Map<String, Long> userIds) {
+        Map<Long, Account> accounts = new HashMap<>();
+        List<Long> ids = userIds.values().stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) return accounts;
+
+        for (User user : userRepo.findByIds(ids)) {
+            accounts.put(user.getId(), new Account(user));
+        }
+        for (Holding holding : holdingRepo.getHoldingsByUserIdsOrderedByPrice(ids)) {
+            Account account = accounts.get((long) holding.getUserId());
+            if (account != null) {
+                account.lotsOf(holding.getCryptoSymbol()).add(new Lot(holding.getId(), holding.getPrice(), holding.getQuantity()));
+            }
+        }
+        return accounts;
+    }
+
+    private void persist(Iterable<Account> accounts, List<Transaction> fills) {
+        if (fills.isEmpty()) return;
+
+        Map<Long, BigDecimal> credits = new LinkedHashMap<>();
+        Map<Long, Long> versions = new HashMap<>();
+        List<Long> emptiedLotIds = new ArrayList<>();
+        Map<Long, BigDecimal> reducedLots = new LinkedHashMap<>();
+        List<Holding> newLots = new ArrayList<>();
+
+        for (Account account : accounts) {
+            if (!account.traded) continue;
+
+            credits.put(account.userId, account.balanceChange);
+            versions.put(account.userId, account.version);
+
+            account.lots.forEach((symbol, lots) -> {
+                for (Lot lot : lots) {
+                    if (lot.id == 0) {
+                        if (lot.quantity.signum() > 0) {
+                            newLots.add(Holding.builder()
+                                    .userId(account.userId.intValue())
+                                    .cryptoSymbol(symbol)
+                                    .quantity(lot.quantity)
+                                    .price(lot.price)
+                                    .build());
+                        }
+                    } else if (lot.quantity.signum() == 0) {
+                        emptiedLotIds.add((long) lot.id);
+                    } else if (lot.quantity.compareTo(lot.originalQuantity) != 0) {
+                        reducedLots.put((long) lot.id, lot.quantity);
+                    }
+                }
+            });
+        }
+
+        if (!userRepo.creditBalances(credits, versions)) {
+            throw new OptimisticLockingFailureException("Accounts changed during batch");
+        }
+
+        if (!emptiedLotIds.isEmpty()) {
+            holdingRepo.deleteHoldingsByIds(emptiedLotIds);
+        }
+        if (!reducedLots.isEmpty()) {
+            holdingRepo.updateHoldingQuantities(reducedLots);
+        }
+        if (!newLots.isEmpty()) {
+            holdingRepo.upsertHoldings(newLots);
+        }
+        transactionRepo.insertTransactions(fills);
+    }
+
+    private static boolean isBuy(TradeRequest trade) {
+        if (trade.getSymbol() == null || trade.getSymbol().isBlank()) {
+            throw new InvalidTradeException("Symbol is required");
+        }
+        if (trade.getPrice() == null || trade.getPrice().signum() <= 0) {
+            throw new InvalidTradeException("Price must be positive");
+        }
+        if (trade.getQuantity() == null || trade.getQuantity().signum() <= 0) {
+            throw new InvalidTradeException("Quantity must be positive");
+        }
+        TradingService.checkPrecision(trade.getPrice(), trade.getQuantity());
+        if ("BUY".equalsIgnoreCase(trade.getSide())) return true;
+        if ("SELL".equalsIgnoreCase(trade.getSide())) return false;
+        throw new InvalidTradeException("Side must be BUY or SELL");
+    }
+
+    private static String reason(RuntimeException e) {
+        if (e instanceof InsufficientBalanceException) return "Insufficient balance: " + e.getMessage();
+        if (e instanceof InsufficientHoldingsException) return "Insufficient holdings: " + e.getMessage();
+        return "Invalid trade: " + e.getMessage();
+    }
+
+    private static TradeResult result(int index, TradeResult.Status status, String message) {
+        return TradeResult.builder().index(index).status(status).message(message).build();
+    }
+
+    private static final class Account {
+        private final Long userId;
+        private final long version;
+        private final Map<String, List<Lot>> lots = new HashMap<>();
+        private BigDecimal balance;
+        private BigDecimal balanceChange = BigDecimal.ZERO;
+        private boolean traded;
+
+        private Account(User user) {
+            this.userId = user.getId();
+            this.version = user.getVersion();
+            this.balance = user.getBalance();
+        }
+
+        private List<Lot> lotsOf(String symbol) {
+            return lots.computeIfAbsent(symbol, s -> new ArrayList<>());
+        }
+
+        private Transaction buy(String symbol, BigDecimal price, BigDecimal quantity) {
+            BigDecimal cost = price.multiply(quantity);
+            if (balance.compareTo(cost) < 0) {
+                throw new InsufficientBalanceException("Needed: $" + cost + ", Available: $" + balance);
+            }
+
+            List<Lot> symbolLots = lotsOf(symbol);
+            int at = 0;
+            while (at < symbolLots.size() && (symbolLots.get(at).price == null || symbolLots.get(at).price.compareTo(price) < 0)) {
+                at++;
+            }
+            if (at < symbolLots.size() && symbolLots.get(at).price.compareTo(price) == 0) {
+                Lot lot = symbolLots.get(at);
+                lot.quantity = lot.quantity.add(quantity);
+            } else {
+                Lot lot = new Lot(0, price, BigDecimal.ZERO);
+                lot.quantity = quantity;
+                symbolLots.add(at, lot);
+            }
+
+            adjustBalance(cost.negate());
+            return fill(symbol, quantity, price, "BUY");
+        }
+
+        private List<Transaction> sell(String symbol, BigDecimal price, BigDecimal quantity) {
+            List<Lot> symbolLots = lotsOf(symbol);
+            BigDecimal available = BigDecimal.ZERO;
+            for (Lot lot : symbolLots) {
+                available = available.add(lot.quantity);
+            }
+            if (available.compareTo(quantity) < 0) {
+                throw new InsufficientHoldingsException("Needed: " + quantity + " " + symbol + ", Available: " + available);
+            }
+
+            List<Transaction> fills = new ArrayList<>();
+            BigDecimal remainingToSell = quantity;
+            for (Lot lot : symbolLots) {
+                if (remainingToSell.signum() <= 0) break;
+                if (lot.quantity.signum() == 0) continue;
+
+                BigDecimal sellQty = remainingToSell.min(lot.quantity);
+                lot.quantity = lot.quantity.subtract(sellQty);
+                remainingToSell = remainingToSell.subtract(sellQty);
+                fills.add(fill(symbol, sellQty, price, "SELL"));
+            }
+
+            adjustBalance(price.multiply(quantity));
+            return fills;
+        }
+
+        private void adjustBalance(BigDecimal amount) {
+            balance = balance.add(amount);
+            balanceChange = balanceChange.add(amount);
+            traded = true;
+        }
+
+        private Transaction fill(String symbol, BigDecimal quantity, BigDecimal price, String type) {
+            return Transaction.builder()
+                    .userId(userId.intValue())
+                    .cryptoSymbol(symbol)
+                    .quantity(quantity)
+                    .price(price)
+                    .type(type)
+                    .build();
+        }
+    }
+
+    private static final class Lot {
+        private final int id;
+        private final BigDecimal price;
+        private final BigDecimal originalQuantity;
+        private BigDecimal quantity;
+
+        private Lot(int id, BigDecimal price, BigDecimal quantity) {
+            this.id = id;
+            this.price = price;
+            this.originalQuantity = quantity;
+            this.quantity = quantity;
+        }
+    }
+}
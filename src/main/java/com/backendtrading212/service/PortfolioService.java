@@ -0,0 +1,156 @@
+package com.backendtrading212.service;
+
+import com.backendtrading212.datasource.ReadRouting;
+import com.backendtrading212.datasource.ReplicaRoutingDataSource;
+import com.backendtrading212.dto.PortfolioSnapshot;
+import com.backendtrading212.dto.ProfitAndLoss;
+import com.backendtrading212.exception.PortfolioUnavailableException;
+import com.backendtrading212.metrics.StatementStats;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.model.User;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Service
+public class PortfolioService {
+
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private HoldingRepository holdingRepo;
+    @Autowired
+    private TradingService tradingService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired(required = false)
+    private ReadRouting readRouting;
+
+    @Value("${trading.portfolio.threads:8}")
+    private int threads;
+
+    @Value("${trading.portfolio.queue-size:1000}")
+    private int queueSize;
+
+    @Value("${trading.portfolio.timeout:2s}")
+    private Duration timeout;
+
+    @Value("${trading.portfolio.max-attempts:3}")
+    private int maxAttempts;
+
+    private ExecutorService executor;
+    private TransactionTemplate snapshotTx;
+    private Counter retries;
+    private Counter fallbacks;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger ids = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), task -> {
+                    Thread thread = new Thread(task, "portfolio-" + ids.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "portfolio");
+
+        snapshotTx = new TransactionTemplate(transactionManager);
+        snapshotTx.setReadOnly(true);
+        snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        retries = meterRegistry.counter("trading.portfolio.snapshot.retries");
+        fallbacks = meterRegistry.counter("trading.portfolio.snapshot.fallbacks");
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    // Balance, holdings and P&L are read in parallel from one pinned data source and accepted only if the account
+    // version did not move meanwhile; an account that keeps trading falls back to one sequential repeatable-read
+    // transaction.
+    public PortfolioSnapshot snapshot(String username) {
+        Long userId = userRepo.findIdByUsername(username);
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            PortfolioSnapshot snapshot = parallelSnapshot(username, userId, deadline);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            retries.increment();
+        }
+
+        fallbacks.increment();
+        return snapshotTx.execute(status -> {
+            User user = userRepo.findById(userId);
+            return new PortfolioSnapshot(username, user.getBalance(), user.getVersion(),
+                    holdingRepo.getHoldingsByUserId(userId), tradingService.getProfitAndLoss(userId));
+        });
+    }
+
+    private PortfolioSnapshot parallelSnapshot(String username, Long userId, long deadline) {
+        ReplicaRoutingDataSource.Pin pin = readRouting == null ? null : readRouting.pin(username);
+        CompletableFuture<User> before = async(pin, () -> userRepo.findById(userId));
+        CompletableFuture<List<Holding>> holdings = async(pin, () -> holdingRepo.getHoldingsByUserId(userId));
+        CompletableFuture<List<ProfitAndLoss>> pnl = async(pin, () -> tradingService.getProfitAndLoss(userId));
+
+        CompletableFuture<PortfolioSnapshot> snapshot = CompletableFuture.allOf(before, holdings, pnl)
+                .thenCompose(ignored -> async(pin, () -> userRepo.findById(userId)))
+                .thenApply(after -> after.getVersion() != before.join().getVersion() ? null
+                        : new PortfolioSnapshot(username, after.getBalance(), after.getVersion(), holdings.join(), pnl.join()));
+
+        try {
+            return snapshot.orTimeout(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).join();
+        } catch (CompletionException e) {
+            before.cancel(false);
+            holdings.cancel(false);
+            pnl.cancel(false);
+            if (e.getCause() instanceof TimeoutException) {
+                throw new PortfolioUnavailableException("Portfolio for " + username + " not ready within " + timeout, e.getCause());
+            }
+            if (pin != null && e.getCause() instanceof DataAccessResourceFailureException) {
+                // The pinned replica went away; it is ejected by now and the next attempt pins another source.
+                return null;
+            }
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> async(ReplicaRoutingDataSource.Pin pin, Supplier<T> query) {
+        Supplier<T> routed = pin == null ? query : () -> readRouting.read(pin, query);
+        try {
+            return CompletableFuture.supplyAsync(StatementStats.propagate(routed), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new PortfolioUnavailableException("Portfolio executor is saturated", e));
+        }
+    }
+}
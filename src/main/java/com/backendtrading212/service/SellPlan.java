@@ -0,0 +1,53 @@
+package com.backendtrading212.service;
+
+import com.backendtrading212.exception.InsufficientHoldingsException;
+import com.backendtrading212.model.Holding;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class SellPlan {
+
+    private final List<Long> emptiedLotIds = new ArrayList<>();
+    private final Map<Long, BigDecimal> reducedLots = new LinkedHashMap<>();
+    private final List<BigDecimal> lotQuantities = new ArrayList<>();
+    private BigDecimal proceeds = BigDecimal.ZERO;
+
+    private SellPlan() {
+    }
+
+    public static SellPlan of(List<Holding> lotsByPrice, String symbol, BigDecimal price, BigDecimal quantity) {
+        SellPlan plan = new SellPlan();
+        BigDecimal remainingToSell = quantity;
+
+        for (Holding holding : lotsByPrice) {
+            if (remainingToSell.signum() <= 0) break;
+
+            BigDecimal availableQty = holding.getQuantity();
+            BigDecimal sellQty = remainingToSell.min(availableQty);
+            BigDecimal newQty = availableQty.subtract(sellQty);
+
+            if (newQty.signum() == 0) {
+                plan.emptiedLotIds.add((long) holding.getId());
+            } else {
+                plan.reducedLots.put((long) holding.getId(), newQty);
+            }
+
+            plan.lotQuantities.add(sellQty);
+            remainingToSell = remainingToSell.subtract(sellQty);
+        }
+
+        if (remainingToSell.signum() > 0) {
+            throw new InsufficientHoldingsException("Needed: " + quantity + " " + symbol
+                    + ", Available: " + quantity.subtract(remainingToSell));
+        }
+
+        plan.proceeds = price.multiply(quantity);
+        return plan;
+    }
+}
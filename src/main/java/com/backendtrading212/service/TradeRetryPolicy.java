@@ -0,0 +1,47 @@
+package com.backendtrading212.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Component
+public class TradeRetryPolicy {
+
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    private Counter retries;
+    private Counter conflicts;
+
+    @PostConstruct
+    void registerMetrics() {
+        retries = meterRegistry.counter("trading.trade.retries");
+        conflicts = meterRegistry.counter("trading.trade.conflicts");
+    }
+
+    public void execute(Runnable trade) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                txTemplate.executeWithoutResult(status -> trade.run());
+                return;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    conflicts.increment();
+                    throw e;
+                }
+                retries.increment();
+            }
+        }
+    }
+}
@@ -1,22 +1,30 @@
 package com.backendtrading212.service;
 
+import com.backendtrading212.datasource.ReadRouting;
+import com.backendtrading212.dto.ProfitAndLoss;
 import com.backendtrading212.exception.InsufficientBalanceException;
+import com.backendtrading212.exception.InvalidTradeException;
+import com.backendtrading212.ledger.LedgerEngine;
+import com.backendtrading212.marketdata.LatestPriceTable;
 import com.backendtrading212.model.Holding;
-import com.backendtrading212.model.Transaction;
+import com.backendtrading212.model.FixedPoint;
+import com.backendtrading212.model.Position;
 import com.backendtrading212.model.User;
 import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.PositionRepository;
 import com.backendtrading212.repository.TransactionRepository;
 import com.backendtrading212.repository.UserRepository;
+import com.backendtrading212.stream.TradeCommittedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 public class TradingService {
@@ -26,83 +34,120 @@ public class TradingService {
     private HoldingRepository holdingRepo;
     @Autowired
     private TransactionRepository transactionRepo;
+    @Autowired
+    private PositionRepository positionRepo;
+    @Autowired
+    private TradeRetryPolicy retryPolicy;
+    @Autowired(required = false)
+    private LedgerEngine ledger;
+    @Autowired(required = false)
+    private ReadRouting readRouting;
+    @Autowired
+    private ApplicationEventPublisher events;
+    @Autowired(required = false)
+    private LatestPriceTable marketPrices;
+    @Autowired(required = false)
+    private TransactionGroupCommitter groupCommitter;
 
     public void buy(String username, String symbol, BigDecimal price, BigDecimal quantity) {
-        User user = userRepo.findByUsername(username);
-        BigDecimal cost = price.multiply(quantity);
-
-        if (user.getBalance().compareTo(cost) < 0) {
-            throw new InsufficientBalanceException("Needed: $" + cost + ", Available: $" + user.getBalance());
+        checkPrecision(price, quantity);
+        if (ledger != null) {
+            ledger.buy(username, symbol, price, quantity);
+        } else {
+            runTrade(() -> executeBuy(username, symbol, price, quantity));
+            recordWrite(username);
         }
-
-        userRepo.updateBalance(user.getId(), user.getBalance().subtract(cost));
-        holdingRepo.upsertHolding(user.getId(), symbol, quantity, price);
-        transactionRepo.insertTransaction(user.getId(), symbol, quantity, price, "BUY");
+        events.publishEvent(new TradeCommittedEvent(username, "BUY", symbol, price, quantity));
     }
 
     public void sell(String username, String symbol, BigDecimal price, BigDecimal quantity) {
-        User user = userRepo.findByUsername(username);
-        Long userId = user.getId();
+        checkPrecision(price, quantity);
+        if (ledger != null) {
+            ledger.sell(username, symbol, price, quantity);
+        } else {
+            runTrade(() -> executeSell(username, symbol, price, quantity));
+            recordWrite(username);
+        }
+        events.publishEvent(new TradeCommittedEvent(username, "SELL", symbol, price, quantity));
+    }
 
-        List<Holding> holdings = holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(userId, symbol);
+    // Values finer or wider than their columns are rejected rather than left for the database to round.
+    static void checkPrecision(BigDecimal price, BigDecimal quantity) {
+        if (price != null && !FixedPoint.isPrice(price)) {
+            throw new InvalidTradeException("Price " + price.toPlainString() + " needs at most " + FixedPoint.PRICE_SCALE
+                    + " decimal places and must not exceed " + FixedPoint.PRICE_MAX.toPlainString());
+        }
+        if (quantity != null && !FixedPoint.isQuantity(quantity)) {
+            throw new InvalidTradeException("Quantity " + quantity.toPlainString() + " needs at most " + FixedPoint.QUANTITY_SCALE
+                    + " decimal places and must not exceed " + FixedPoint.QUANTITY_MAX.toPlainString());
+        }
+    }
 
-        BigDecimal remainingToSell = quantity;
-        BigDecimal totalProceeds = BigDecimal.ZERO;
+    // With group commit enabled the whole trade, history included, shares one commit with other requests.
+    private void runTrade(Runnable trade) {
+        if (groupCommitter != null) {
+            groupCommitter.execute(trade);
+        } else {
+            retryPolicy.execute(trade);
+        }
+    }
 
-        for (Holding holding : holdings) {
-            if (remainingToSell.compareTo(BigDecimal.ZERO) <= 0) break;
+    private void recordWrite(String username) {
+        if (readRouting != null) {
+            readRouting.recordWrite(username);
+        }
+    }
 
-            BigDecimal availableQty = holding.getQuantity();
-            BigDecimal sellQty = remainingToSell.min(availableQty);
+    private void executeBuy(String username, String symbol, BigDecimal price, BigDecimal quantity) {
+        Long userId = userRepo.findIdByUsername(username);
+        BigDecimal cost = price.multiply(quantity);
 
-            totalProceeds = totalProceeds.add(sellQty.multiply(price));
-            remainingToSell = remainingToSell.subtract(sellQty);
+        if (!userRepo.debitBalance(userId, cost)) {
+            throw new InsufficientBalanceException("Needed: $" + cost + ", Available: $" + userRepo.findBalanceById(userId));
+        }
 
-            BigDecimal newQty = availableQty.subtract(sellQty);
+        holdingRepo.upsertHolding(userId, symbol, quantity, price);
+        transactionRepo.insertTransaction(userId, symbol, quantity, price, "BUY");
+    }
 
-            if (newQty.compareTo(BigDecimal.ZERO) == 0) {
-                holdingRepo.deleteHoldingById((long) holding.getId());
-            } else {
-                holdingRepo.updateHoldingQuantityById((long) holding.getId(), newQty);
-            }
+    private void executeSell(String username, String symbol, BigDecimal price, BigDecimal quantity) {
+        Long userId = userRepo.findIdByUsername(username);
+        User user = userRepo.findById(userId);
 
-            transactionRepo.insertTransaction(userId, symbol, sellQty, price, "SELL");
-        }
+        List<Holding> lots = holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(userId, symbol);
+        SellPlan plan = SellPlan.of(lots, symbol, price, quantity);
 
-        if (remainingToSell.compareTo(BigDecimal.ZERO) > 0) {
-            throw new RuntimeException("Not enough holdings to sell");
+        if (!userRepo.creditBalance(userId, plan.getProceeds(), user.getVersion())) {
+            throw new OptimisticLockingFailureException("Account " + username + " changed during sell");
         }
 
-        userRepo.updateBalance(userId, user.getBalance().add(totalProceeds));
+        if (!plan.getEmptiedLotIds().isEmpty()) {
+            holdingRepo.deleteHoldingsByIds(plan.getEmptiedLotIds());
+        }
+        if (!plan.getReducedLots().isEmpty()) {
+            holdingRepo.updateHoldingQuantities(plan.getReducedLots());
+        }
+        transactionRepo.insertTransactions(userId, symbol, plan.getLotQuantities(), price, "SELL");
     }
 
-    public List<Map<String, Object>> getProfitAndLoss(String username) {
-        User user = userRepo.findByUsername(username);
-        Long userId = user.getId();
-
-        List<Transaction> transactions = transactionRepo.getTransactionsByUserId(userId);
-
-        Map<String, List<Transaction>> grouped = transactions.stream()
-                .collect(Collectors.groupingBy(Transaction::getCryptoSymbol));
+    public List<ProfitAndLoss> getProfitAndLoss(String username) {
+        return getProfitAndLoss(userRepo.findIdByUsername(username));
+    }
 
-        List<Map<String, Object>> result = new ArrayList<>();
+    public List<ProfitAndLoss> getProfitAndLoss(Long userId) {
+        List<Position> positions = positionRepo.getPositionsByUserId(userId);
+        Map<String, BigDecimal> latestPrices = latestPrices(
+                positions.stream().map(Position::getCryptoSymbol).toList());
 
-        for (String symbol : grouped.keySet()) {
-            BigDecimal totalBoughtQty = BigDecimal.ZERO;
-            BigDecimal totalBoughtAmount = BigDecimal.ZERO;
+        List<ProfitAndLoss> result = new ArrayList<>(positions.size());
 
-            BigDecimal totalSoldQty = BigDecimal.ZERO;
-            BigDecimal totalSoldAmount = BigDecimal.ZERO;
+        for (Position position : positions) {
+            String symbol = position.getCryptoSymbol();
+            BigDecimal totalBoughtQty = position.getBoughtQty();
+            BigDecimal totalBoughtAmount = position.getBoughtAmount();
 
-            for (Transaction tx : grouped.get(symbol)) {
-                if ("BUY".equalsIgnoreCase(tx.getType())) {
-                    totalBoughtQty = totalBoughtQty.add(tx.getQuantity());
-                    totalBoughtAmount = totalBoughtAmount.add(tx.getQuantity().multiply(tx.getPrice()));
-                } else if ("SELL".equalsIgnoreCase(tx.getType())) {
-                    totalSoldQty = totalSoldQty.add(tx.getQuantity());
-                    totalSoldAmount = totalSoldAmount.add(tx.getQuantity().multiply(tx.getPrice()));
-                }
-            }
+            BigDecimal totalSoldQty = position.getSoldQty();
+            BigDecimal totalSoldAmount = position.getSoldAmount();
 
             BigDecimal avgBuyPrice = totalBoughtQty.compareTo(BigDecimal.ZERO) == 0
                     ? BigDecimal.ZERO
@@ -116,28 +161,29 @@ public class TradingService {
 
             BigDecimal remainingQty = totalBoughtQty.subtract(totalSoldQty);
 
-            BigDecimal latestPrice = transactionRepo.getLatestPriceForSymbol(symbol);
+            BigDecimal latestPrice = latestPrices.get(symbol);
             BigDecimal unrealizedPnL = latestPrice != null
                     ? latestPrice.subtract(avgBuyPrice).multiply(remainingQty)
                     : BigDecimal.ZERO;
 
             BigDecimal totalPnL = realizedPnL.add(unrealizedPnL);
 
-            Map<String, Object> pnlData = new HashMap<>();
-            pnlData.put("symbol", symbol);
-            pnlData.put("totalBought", totalBoughtQty);
-            pnlData.put("totalSold", totalSoldQty);
-            pnlData.put("remainingQty", remainingQty);
-            pnlData.put("avgBuyPrice", avgBuyPrice);
-            pnlData.put("currentPrice", latestPrice);
-            pnlData.put("realizedPnL", realizedPnL);
-            pnlData.put("unrealizedPnL", unrealizedPnL);
-            pnlData.put("totalPnL", totalPnL);
-
-            result.add(pnlData);
+            result.add(new ProfitAndLoss(symbol, totalBoughtQty, totalSoldQty, remainingQty, avgBuyPrice,
+                    latestPrice, realizedPnL, unrealizedPnL, totalPnL));
         }
 
         return result;
     }
 
-}
\ No newline at end of file
+    private Map<String, BigDecimal> latestPrices(List<String> symbols) {
+        if (marketPrices == null) {
+            return transactionRepo.getLatestPrices(symbols);
+        }
+        Map<String, BigDecimal> prices = marketPrices.freshPrices(symbols);
+        if (prices.size() < symbols.size()) {
+            List<String> missing = symbols.stream().filter(symbol -> !prices.containsKey(symbol)).toList();
+            prices.putAll(transactionRepo.getLatestPrices(missing));
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,215 @@
+package com.backendtrading212.service;
+
+import com.backendtrading212.metrics.StatementStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Whole trades from concurrent requests are queued and run back to back by one flusher thread inside a
+// single transaction, so many trades share one commit. Each trade runs under its own savepoint: a trade
+// that fails is rolled back alone and only its caller sees the error. If the shared transaction itself
+// fails (a lock conflict or the commit), nothing in it is durable and every trade is re-run on its own.
+@Component
+@ConditionalOnProperty(name = "trading.transactions.group-commit.enabled", havingValue = "true")
+public class TransactionGroupCommitter {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionGroupCommitter.class);
+
+    @Autowired
+    private TransactionTemplate txTemplate;
+    @Autowired
+    private TradeRetryPolicy retryPolicy;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.transactions.group-commit.batch-size:256}")
+    private int batchSize;
+
+    @Value("${trading.transactions.group-commit.linger:500us}")
+    private Duration linger;
+
+    @Value("${trading.transactions.group-commit.queue-depth:10000}")
+    private int queueDepth;
+
+    private BlockingQueue<Pending> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private DistributionSummary batchTrades;
+    private Timer flushLatency;
+    private Counter failedTrades;
+    private Counter abortedBatches;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueDepth);
+
+        batchTrades = DistributionSummary.builder("trading.transactions.group-commit.batch.trades")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        flushLatency = Timer.builder("trading.transactions.group-commit.flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        failedTrades = meterRegistry.counter("trading.transactions.group-commit.failed.trades");
+        abortedBatches = meterRegistry.counter("trading.transactions.group-commit.aborted.batches");
+        Gauge.builder("trading.transactions.group-commit.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("trading.transactions.group-commit.batch.size.limit", () -> batchSize).register(meterRegistry);
+        Gauge.builder("trading.transactions.group-commit.linger", () -> linger.toNanos() / 1_000.0)
+                .baseUnit("microseconds")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::run, "transaction-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.join(5_000);
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(this::reject);
+    }
+
+    // Blocks while the queue is full, but never past shutdown: a trade that is not queued before the flusher
+    // stops, or is still queued once it has, fails instead of waiting forever.
+    public CompletableFuture<Void> submit(Runnable trade) {
+        Pending pending = new Pending(StatementStats.propagate(trade), new CompletableFuture<>());
+        try {
+            while (running) {
+                if (queue.offer(pending, 100, TimeUnit.MILLISECONDS)) {
+                    if (!running && queue.remove(pending)) {
+                        reject(pending);
+                    }
+                    return pending.done;
+                }
+            }
+            reject(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.done.completeExceptionally(e);
+        }
+        return pending.done;
+    }
+
+    public void execute(Runnable trade) {
+        try {
+            submit(trade).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + linger.toNanos();
+                while (batch.size() < batchSize) {
+                    Pending next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<RuntimeException> errors = new ArrayList<>(batch.size());
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                errors.clear();
+                for (Pending pending : batch) {
+                    Object savepoint = status.createSavepoint();
+                    try {
+                        pending.trade.run();
+                        status.releaseSavepoint(savepoint);
+                        errors.add(null);
+                    } catch (ConcurrencyFailureException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        status.rollbackToSavepoint(savepoint);
+                        errors.add(e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} trades aborted, running them one by one", batch.size(), e);
+            abortedBatches.increment();
+            batch.forEach(this::runAlone);
+            return;
+        }
+
+        batchTrades.record(batch.size());
+        flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < batch.size(); i++) {
+            RuntimeException error = errors.get(i);
+            if (error == null) {
+                batch.get(i).done.complete(null);
+            } else {
+                failedTrades.increment();
+                batch.get(i).done.completeExceptionally(error);
+            }
+        }
+    }
+
+    private void runAlone(Pending pending) {
+        try {
+            retryPolicy.execute(pending.trade);
+            batchTrades.record(1);
+            pending.done.complete(null);
+        } catch (RuntimeException e) {
+            failedTrades.increment();
+            pending.done.completeExceptionally(e);
+        }
+    }
+
+    private void reject(Pending pending) {
+        pending.done.completeExceptionally(new RejectedExecutionException("Group commit is shut down"));
+    }
+
+    private record Pending(Runnable trade, CompletableFuture<Void> done) {
+    }
+}
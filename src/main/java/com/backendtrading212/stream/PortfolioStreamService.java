@@ -0,0 +1,267 @@
+package com.backendtrading212.stream;
+
+import com.backendtrading212.dto.PortfolioSnapshot;
+import com.backendtrading212.service.PortfolioService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+public class PortfolioStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioStreamService.class);
+    private static final Object HEARTBEAT = new Object();
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${trading.stream.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${trading.stream.max-pending-trades:100}")
+    private int maxPendingTrades;
+
+    @Value("${trading.stream.max-conflated-updates:20}")
+    private int maxConflatedUpdates;
+
+    @Value("${trading.stream.sender-threads:4}")
+    private int senderThreads;
+
+    private final Map<String, UserStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private ExecutorService sender;
+
+    private Counter updatesSent;
+    private Counter updatesConflated;
+    private Counter slowConsumersEvicted;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threads = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(senderThreads, task -> {
+            Thread thread = new Thread(task, "portfolio-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        meterRegistry.gauge("trading.stream.subscribers", subscriberCount);
+        updatesSent = meterRegistry.counter("trading.stream.updates", "outcome", "sent");
+        updatesConflated = meterRegistry.counter("trading.stream.updates", "outcome", "conflated");
+        slowConsumersEvicted = meterRegistry.counter("trading.stream.evictions");
+    }
+
+    @PreDestroy
+    void stop() {
+        streams.values().forEach(stream -> stream.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        sender.shutdownNow();
+    }
+
+    public SseEmitter subscribe(String username) {
+        PortfolioUpdate initial = snapshot(username, List.of(), false);
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(username, emitter);
+        streams.compute(username, (name, current) -> {
+            UserStream stream = current != null ? current : new UserStream(name);
+            stream.subscribers.add(subscriber);
+            return stream;
+        });
+        subscriberCount.incrementAndGet();
+
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        subscriber.offer(initial);
+        return emitter;
+    }
+
+    @EventListener
+    public void onTradeCommitted(TradeCommittedEvent event) {
+        UserStream stream = streams.get(event.username());
+        if (stream != null) {
+            stream.record(event);
+        }
+    }
+
+    // Snapshots are read on the sender pool so the shared scheduler thread never waits on the database. A stream
+    // whose previous snapshot is still being built keeps its trades pending for the next flush, so updates for one
+    // user are never built out of order.
+    @Scheduled(fixedDelayString = "${trading.stream.coalesce-interval-ms:250}")
+    public void flush() {
+        for (UserStream stream : streams.values()) {
+            if (!stream.building.compareAndSet(false, true)) continue;
+
+            List<TradeCommittedEvent> trades;
+            boolean truncated;
+            stream.lock.lock();
+            try {
+                if (stream.pending.isEmpty()) {
+                    stream.building.set(false);
+                    continue;
+                }
+                trades = stream.pending;
+                truncated = stream.truncated;
+                stream.pending = new ArrayList<>();
+                stream.truncated = false;
+            } finally {
+                stream.lock.unlock();
+            }
+
+            try {
+                sender.execute(() -> publish(stream, trades, truncated));
+            } catch (RejectedExecutionException e) {
+                stream.building.set(false);
+            }
+        }
+    }
+
+    private void publish(UserStream stream, List<TradeCommittedEvent> trades, boolean truncated) {
+        try {
+            PortfolioUpdate update = snapshot(stream.username, trades, truncated);
+            stream.subscribers.forEach(subscriber -> subscriber.offer(update));
+        } catch (RuntimeException e) {
+            log.warn("Failed to build portfolio update for {}", stream.username, e);
+        } finally {
+            stream.building.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${trading.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        streams.values().forEach(stream -> stream.subscribers.forEach(Subscriber::heartbeat));
+    }
+
+    // Always a full, consistent snapshot: subscribers keep only their latest undelivered update, which is only safe
+    // when each update replaces the previous one instead of building on it.
+    private PortfolioUpdate snapshot(String username, List<TradeCommittedEvent> trades, boolean truncated) {
+        PortfolioSnapshot snapshot = portfolioService.snapshot(username);
+        return new PortfolioUpdate(snapshot.balance(), snapshot.holdings(), snapshot.pnl(), trades, truncated);
+    }
+
+    private final class UserStream {
+        private final String username;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicBoolean building = new AtomicBoolean();
+        private List<TradeCommittedEvent> pending = new ArrayList<>();
+        private boolean truncated;
+
+        private UserStream(String username) {
+            this.username = username;
+        }
+
+        private void record(TradeCommittedEvent event) {
+            lock.lock();
+            try {
+                if (pending.size() >= maxPendingTrades) {
+                    pending.remove(0);
+                    truncated = true;
+                }
+                pending.add(event);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final class Subscriber {
+        private final String username;
+        private final SseEmitter emitter;
+        private final AtomicReference<Object> mailbox = new AtomicReference<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicInteger conflated = new AtomicInteger();
+
+        private Subscriber(String username, SseEmitter emitter) {
+            this.username = username;
+            this.emitter = emitter;
+        }
+
+        private void offer(PortfolioUpdate update) {
+            Object previous = mailbox.getAndSet(update);
+            if (previous instanceof PortfolioUpdate) {
+                updatesConflated.increment();
+                if (conflated.incrementAndGet() > maxConflatedUpdates) {
+                    slowConsumersEvicted.increment();
+                    log.info("Evicting slow portfolio stream subscriber for {}", username);
+                    emitter.complete();
+                    close();
+                    return;
+                }
+            }
+            scheduleDrain();
+        }
+
+        private void heartbeat() {
+            if (mailbox.compareAndSet(null, HEARTBEAT)) {
+                scheduleDrain();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (!closed.get() && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Object message;
+                while (!closed.get() && (message = mailbox.getAndSet(null)) != null) {
+                    if (message == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().name("portfolio").data(message, MediaType.APPLICATION_JSON));
+                        updatesSent.increment();
+                        conflated.set(0);
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (mailbox.get() != null) {
+                scheduleDrain();
+            }
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriberCount.decrementAndGet();
+                streams.computeIfPresent(username, (name, stream) -> {
+                    stream.subscribers.remove(this);
+                    return stream.subscribers.isEmpty() ? null : stream;
+                });
+            }
+        }
+    }
+}
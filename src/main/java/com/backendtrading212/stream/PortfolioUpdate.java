@@ -0,0 +1,14 @@
+package com.backendtrading212.stream;
+
+import com.backendtrading212.dto.ProfitAndLoss;
+import com.backendtrading212.model.Holding;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record PortfolioUpdate(BigDecimal balance,
+                              List<Holding> holdings,
+                              List<ProfitAndLoss> pnl,
+                              List<TradeCommittedEvent> trades,
+                              boolean tradesTruncated) {
+}
@@ -0,0 +1,10 @@
+package com.backendtrading212.stream;
+
+import java.math.BigDecimal;
+
+public record TradeCommittedEvent(String username, String type, String symbol, BigDecimal price, BigDecimal quantity) {
+
+    public static TradeCommittedEvent reset(String username) {
+        return new TradeCommittedEvent(username, "RESET", null, null, null);
+    }
+}
@@ -0,0 +1,13 @@
+-- Ledger write-behinds that could not be applied after their trade was acknowledged. The account is reloaded
+-- from the database, so these rows are the only record of the lost trade until someone reconciles them.
+CREATE TABLE ledger_dead_letters (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    username VARCHAR(50) NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    crypto_symbol VARCHAR(10),
+    price DECIMAL(15, 2),
+    quantity DECIMAL(20, 10),
+    journal_seq BIGINT,
+    error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
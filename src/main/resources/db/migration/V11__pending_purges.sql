@@ -0,0 +1,9 @@
+-- Accounts reset since their pre-reset rows were last purged. Written with each reset so the purge job reads only
+-- accounts with work to do instead of comparing epochs across every user.
+CREATE TABLE pending_purges (
+    user_id INT PRIMARY KEY,
+    epoch INT NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+INSERT INTO pending_purges (user_id, epoch) SELECT id, epoch FROM users WHERE purged_epoch < epoch;
@@ -0,0 +1,21 @@
+CREATE TABLE positions (
+                           user_id INT NOT NULL,
+                           crypto_symbol VARCHAR(10) NOT NULL,
+                           bought_qty DECIMAL(30, 10) NOT NULL DEFAULT 0,
+                           bought_amount DECIMAL(30, 12) NOT NULL DEFAULT 0,
+                           sold_qty DECIMAL(30, 10) NOT NULL DEFAULT 0,
+                           sold_amount DECIMAL(30, 12) NOT NULL DEFAULT 0,
+                           PRIMARY KEY (user_id, crypto_symbol),
+                           FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+-- Backfill the aggregates from the existing trade history.
+INSERT INTO positions (user_id, crypto_symbol, bought_qty, bought_amount, sold_qty, sold_amount)
+SELECT user_id, crypto_symbol,
+       COALESCE(SUM(CASE WHEN type = 'BUY' THEN quantity END), 0),
+       COALESCE(SUM(CASE WHEN type = 'BUY' THEN quantity * price END), 0),
+       COALESCE(SUM(CASE WHEN type = 'SELL' THEN quantity END), 0),
+       COALESCE(SUM(CASE WHEN type = 'SELL' THEN quantity * price END), 0)
+FROM transactions
+WHERE user_id IS NOT NULL AND crypto_symbol IS NOT NULL
+GROUP BY user_id, crypto_symbol;
@@ -0,0 +1,13 @@
+CREATE TABLE last_trade_price (
+                                  crypto_symbol VARCHAR(10) PRIMARY KEY,
+                                  price DECIMAL(15, 2) NOT NULL,
+                                  traded_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Backfill with the latest trade of every symbol.
+INSERT INTO last_trade_price (crypto_symbol, price, traded_at)
+SELECT t.crypto_symbol, t.price, t.timestamp
+FROM transactions t
+WHERE t.price IS NOT NULL
+  AND t.id = (SELECT l.id FROM transactions l WHERE l.crypto_symbol = t.crypto_symbol
+              ORDER BY l.timestamp DESC, l.id DESC LIMIT 1);
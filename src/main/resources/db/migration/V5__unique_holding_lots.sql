@@ -0,0 +1,20 @@
+-- Buys used to insert a new lot every time, so merge same-price lots before the key can be added.
+CREATE TABLE holdings_lot_merge AS
+SELECT MIN(id) AS keep_id, user_id, crypto_symbol, price, SUM(quantity) AS quantity
+FROM holdings
+WHERE price IS NOT NULL
+GROUP BY user_id, crypto_symbol, price
+HAVING COUNT(*) > 1;
+
+UPDATE holdings
+SET quantity = (SELECT m.quantity FROM holdings_lot_merge m WHERE m.keep_id = holdings.id)
+WHERE id IN (SELECT keep_id FROM holdings_lot_merge);
+
+DELETE FROM holdings
+WHERE EXISTS (SELECT 1 FROM holdings_lot_merge m
+              WHERE m.user_id = holdings.user_id AND m.crypto_symbol = holdings.crypto_symbol
+                AND m.price = holdings.price AND m.keep_id <> holdings.id);
+
+DROP TABLE holdings_lot_merge;
+
+CREATE UNIQUE INDEX uq_holdings_lot ON holdings (user_id, crypto_symbol, price);
@@ -0,0 +1 @@
+ALTER TABLE users ADD COLUMN journal_seq BIGINT NOT NULL DEFAULT 0;
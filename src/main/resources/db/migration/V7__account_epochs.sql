@@ -0,0 +1,20 @@
+ALTER TABLE users ADD COLUMN epoch INT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN purged_epoch INT NOT NULL DEFAULT 0;
+ALTER TABLE holdings ADD COLUMN epoch INT NOT NULL DEFAULT 0;
+ALTER TABLE transactions ADD COLUMN epoch INT NOT NULL DEFAULT 0;
+ALTER TABLE positions ADD COLUMN epoch INT NOT NULL DEFAULT 0;
+
+-- The user_id foreign keys need an index led by user_id while the lot key and positions key are rebuilt.
+CREATE INDEX idx_holdings_user ON holdings (user_id);
+CREATE INDEX idx_positions_user ON positions (user_id);
+
+ALTER TABLE holdings DROP INDEX uq_holdings_lot;
+CREATE UNIQUE INDEX uq_holdings_lot ON holdings (user_id, epoch, crypto_symbol, price);
+
+ALTER TABLE positions DROP PRIMARY KEY;
+ALTER TABLE positions ADD PRIMARY KEY (user_id, epoch, crypto_symbol);
+
+ALTER TABLE holdings DROP INDEX idx_holdings_user;
+ALTER TABLE positions DROP INDEX idx_positions_user;
+
+CREATE INDEX idx_transactions_user_epoch ON transactions (user_id, epoch);
@@ -0,0 +1,10 @@
+-- Reads filter on the owner's current epoch, so every user-scoped index leads with (user_id, epoch).
+-- Holdings reads are already served by uq_holdings_lot (user_id, epoch, crypto_symbol, price).
+
+-- Transaction history pages, newest first, optionally narrowed to one symbol.
+CREATE INDEX idx_transactions_user_time ON transactions (user_id, epoch, timestamp, id);
+CREATE INDEX idx_transactions_user_symbol_time ON transactions (user_id, epoch, crypto_symbol, timestamp, id);
+ALTER TABLE transactions DROP INDEX idx_transactions_user_epoch;
+
+-- Latest trade per symbol when last_trade_price is rebuilt.
+CREATE INDEX idx_transactions_symbol_time ON transactions (crypto_symbol, timestamp, id);
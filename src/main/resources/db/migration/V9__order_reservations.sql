@@ -0,0 +1,16 @@
+-- Cash and lots held by open matching-engine orders. A buy order keeps one cash row; a sell order keeps one row
+-- per escrowed lot, taken out of holdings so direct sells cannot spend it twice. Order books are in memory, so
+-- rows left behind by a restart are returned to their owners on startup.
+CREATE TABLE order_reservations (
+    id INT PRIMARY KEY AUTO_INCREMENT,
+    order_id BIGINT NOT NULL,
+    user_id INT NOT NULL,
+    epoch INT NOT NULL,
+    crypto_symbol VARCHAR(10) NOT NULL,
+    quantity DECIMAL(20, 10) NOT NULL DEFAULT 0,
+    price DECIMAL(15, 2),
+    cash DECIMAL(15, 2) NOT NULL DEFAULT 0,
+    FOREIGN KEY (user_id) REFERENCES users(id)
+);
+
+CREATE INDEX idx_order_reservations_order ON order_reservations (order_id);
@@ -0,0 +1,104 @@
+package com.backendtrading212;
+
+import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.job.AccountPurgeJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "trading.purge.enabled=true",
+        "trading.purge.interval-ms=3600000",
+        "trading.purge.batch-size=2",
+        "trading.purge.batch-pause-ms=0"
+})
+@AutoConfigureMockMvc
+class AccountResetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private AccountPurgeJob purgeJob;
+
+    private String username;
+    private Long userId;
+
+    @BeforeEach
+    void createUser() {
+        username = "reset-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, new BigDecimal("10000"));
+        userId = jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+    }
+
+    @Test
+    void resetHidesOldRowsImmediatelyAndPurgeRemovesThemInBatches() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            trade("/api/buy", "SYM" + i, 10 + i);
+        }
+        trade("/api/sell", "SYM0", 12);
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            mockMvc.perform(post("/api/reset/{username}", username)).andExpect(status().isOk());
+            capture.assertAtMost(3);
+        }
+
+        mockMvc.perform(get("/api/holdings/{username}", username)).andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(get("/api/transactions/{username}", username)).andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(get("/api/pnl/{username}", username)).andExpect(jsonPath("$", hasSize(0)));
+        assertEquals(4, count("holdings"));
+        assertEquals(6, count("transactions"));
+        assertEquals(1, count("pending_purges"));
+
+        trade("/api/buy", "SYM1", 11);
+        mockMvc.perform(get("/api/holdings/{username}", username)).andExpect(jsonPath("$", hasSize(1)));
+
+        purgeJob.purge();
+
+        assertEquals(1, count("holdings"));
+        assertEquals(1, count("transactions"));
+        assertEquals(1, count("positions"));
+        assertEquals(1, jdbc.queryForObject("SELECT purged_epoch FROM users WHERE id = ?", Integer.class, userId));
+        assertEquals(0, count("pending_purges"));
+        mockMvc.perform(get("/api/holdings/{username}", username)).andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    private int count(String table) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE user_id = ?", Integer.class, userId);
+    }
+
+    private void trade(String path, String symbol, int price) throws Exception {
+        TradeRequest request = TradeRequest.builder()
+                .username(username)
+                .symbol(symbol)
+                .price(BigDecimal.valueOf(price))
+                .quantity(BigDecimal.ONE)
+                .build();
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+    }
+}
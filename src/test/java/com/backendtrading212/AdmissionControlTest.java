@@ -0,0 +1,53 @@
+package com.backendtrading212;
+
+import com.backendtrading212.datasource.AdmissionControlDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdmissionControlDataSource dataSource = new AdmissionControlDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:admission;DB_CLOSE_DELAY=-1", "sa", ""),
+            1, Duration.ofMillis(200), meterRegistry);
+
+    @Test
+    void waitersAreAdmittedWhenConnectionIsClosed() throws Exception {
+        Connection first = dataSource.getConnection();
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = dataSource.getConnection()) {
+                return connection.isValid(1);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        while (meterRegistry.get("trading.datasource.admission.queued").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+        assertFalse(second.isDone());
+
+        first.close();
+        first.close();
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("trading.datasource.admission.available").gauge().value());
+    }
+
+    @Test
+    void callersTimeOutWhenNoPermitIsReleased() throws Exception {
+        try (Connection held = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            assertEquals(1, meterRegistry.get("trading.datasource.admission.timeouts").counter().count());
+        }
+        dataSource.getConnection().close();
+    }
+}
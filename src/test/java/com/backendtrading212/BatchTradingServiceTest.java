@@ -0,0 +1,141 @@
+package com.backendtrading212;
+
+import com.backendtrading212.dto.BatchTradeRequest;
+import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.dto.TradeResult;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.model.Transaction;
+import com.backendtrading212.model.User;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import com.backendtrading212.service.BatchTradingService;
+import com.backendtrading212.service.TradeRetryPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BatchTradingServiceTest {
+
+    @InjectMocks
+    private BatchTradingService batchTradingService;
+
+    @Mock
+    private UserRepository userRepo;
+
+    @Mock
+    private HoldingRepository holdingRepo;
+
+    @Mock
+    private TransactionRepository transactionRepo;
+
+    @Mock
+    private TradeRetryPolicy retryPolicy;
+
+    @Mock
+    private ApplicationEventPublisher events;
+
+    @Captor
+    private ArgumentCaptor<List<Transaction>> fills;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(batchTradingService, "maxBatchSize", 500);
+
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(0).run();
+            return null;
+        }).when(retryPolicy).execute(any());
+
+        User user = User.builder()
+                .id(1L)
+                .username("alice")
+                .balance(BigDecimal.valueOf(1000))
+                .version(3)
+                .build();
+
+        when(userRepo.findIdByUsername("alice")).thenReturn(1L);
+        when(userRepo.findByIds(List.of(1L))).thenReturn(List.of(user));
+        when(holdingRepo.getHoldingsByUserIdsOrderedByPrice(List.of(1L))).thenReturn(List.of(
+                Holding.builder().id(7).userId(1).cryptoSymbol("ETH").quantity(BigDecimal.valueOf(2)).price(BigDecimal.valueOf(50)).build()
+        ));
+        when(userRepo.creditBalances(any(), any())).thenReturn(true);
+    }
+
+    @Test
+    void testBestEffort_ValidatesCumulativelyAndPersistsInBatches() {
+        List<TradeResult> results = batchTradingService.submit(batch(BatchTradeRequest.Mode.BEST_EFFORT,
+                trade("BUY", "BTC", 100, 6),
+                trade("BUY", "BTC", 100, 5),
+                trade("SELL", "ETH", 60, 2),
+                trade("SELL", "BTC", 120, 1)));
+
+        assertEquals(List.of(TradeResult.Status.FILLED, TradeResult.Status.REJECTED, TradeResult.Status.FILLED, TradeResult.Status.FILLED),
+                results.stream().map(TradeResult::getStatus).toList());
+        assertTrue(results.get(1).getMessage().startsWith("Insufficient balance"));
+
+        verify(userRepo, times(1)).findIdByUsername("alice");
+        verify(userRepo).creditBalances(Map.of(1L, BigDecimal.valueOf(-360)), Map.of(1L, 3L));
+        verify(holdingRepo).deleteHoldingsByIds(List.of(7L));
+        verify(holdingRepo).upsertHoldings(argThat(lots -> lots.size() == 1
+                && lots.get(0).getCryptoSymbol().equals("BTC")
+                && lots.get(0).getQuantity().compareTo(BigDecimal.valueOf(5)) == 0));
+        verify(transactionRepo).insertTransactions(fills.capture());
+        assertEquals(List.of("BUY", "SELL", "SELL"), fills.getValue().stream().map(Transaction::getType).toList());
+    }
+
+    @Test
+    void testAllOrNothing_RejectionAbortsWholeBatch() {
+        List<TradeResult> results = batchTradingService.submit(batch(BatchTradeRequest.Mode.ALL_OR_NOTHING,
+                trade("BUY", "BTC", 100, 1),
+                trade("SELL", "ETH", 60, 3)));
+
+        assertEquals(TradeResult.Status.ABORTED, results.get(0).getStatus());
+        assertEquals(TradeResult.Status.REJECTED, results.get(1).getStatus());
+
+        verify(userRepo, never()).creditBalances(any(), any());
+        verify(holdingRepo, never()).upsertHoldings(any());
+        verify(transactionRepo, never()).insertTransactions(anyList());
+    }
+
+    @Test
+    void testUnknownUserAndInvalidSide_RejectedPerItem() {
+        when(userRepo.findIdByUsername("ghost")).thenThrow(new EmptyResultDataAccessException(1));
+
+        TradeRequest ghost = trade("BUY", "BTC", 100, 1);
+        ghost.setUsername("ghost");
+
+        List<TradeResult> results = batchTradingService.submit(batch(BatchTradeRequest.Mode.BEST_EFFORT,
+                ghost,
+                trade("HOLD", "BTC", 100, 1)));
+
+        assertEquals("Invalid trade: Unknown user ghost", results.get(0).getMessage());
+        assertEquals("Invalid trade: Side must be BUY or SELL", results.get(1).getMessage());
+        verify(transactionRepo, never()).insertTransactions(anyList());
+    }
+
+    private static BatchTradeRequest batch(BatchTradeRequest.Mode mode, TradeRequest... trades) {
+        return BatchTradeRequest.builder().mode(mode).trades(List.of(trades)).build();
+    }
+
+    private static TradeRequest trade(String side, String symbol, long price, long quantity) {
+        return TradeRequest.builder()
+                .username("alice")
+                .symbol(symbol)
+                .side(side)
+                .price(BigDecimal.valueOf(price))
+                .quantity(BigDecimal.valueOf(quantity))
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.backendtrading212;
+
+import com.backendtrading212.model.FixedPoint;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FixedPointTest {
+
+    @Test
+    void testColumnChecks_RejectOverPrecisionAndOverflow() {
+        assertTrue(FixedPoint.isPrice(new BigDecimal("1.5000")));
+        assertFalse(FixedPoint.isPrice(new BigDecimal("0.005")));
+        assertFalse(FixedPoint.isPrice(new BigDecimal("100000000000000")));
+
+        assertTrue(FixedPoint.isQuantity(new BigDecimal("0.000000000100")));
+        assertTrue(FixedPoint.isQuantity(FixedPoint.QUANTITY_MAX));
+        assertFalse(FixedPoint.isQuantity(new BigDecimal("0.00000000001")));
+        assertFalse(FixedPoint.isQuantity(new BigDecimal("10000000000")));
+    }
+
+    @Test
+    void testUnits_OnlyForQuantitiesThatFitALong() {
+        assertEquals(9_000_000_000_000_000_000L, FixedPoint.units(new BigDecimal("900000000")));
+        assertEquals(1L, FixedPoint.units(new BigDecimal("0.000000000100")));
+        assertEquals(new BigDecimal("0.0000000001"), FixedPoint.ofUnits(1));
+
+        BigDecimal columnMax = FixedPoint.QUANTITY_MAX;
+        assertFalse(FixedPoint.fitsUnits(columnMax));
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.units(columnMax));
+    }
+
+    @Test
+    void testCents_ExactRoundTrip() {
+        assertEquals(150L, FixedPoint.cents(new BigDecimal("1.5")));
+        assertEquals(new BigDecimal("1.50"), FixedPoint.ofCents(150));
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.cents(new BigDecimal("0.005")));
+    }
+
+    @Test
+    void testAmount_RoundsExplicitly() {
+        BigDecimal price = new BigDecimal("0.05");
+        BigDecimal qty = new BigDecimal("0.1");
+
+        assertEquals(new BigDecimal("0.01"), FixedPoint.amount(price, qty, RoundingMode.HALF_UP));
+        assertEquals(new BigDecimal("0.00"), FixedPoint.amount(price, qty, RoundingMode.DOWN));
+        assertEquals(new BigDecimal("0.01"), FixedPoint.amount(price, qty, RoundingMode.UP));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.amount(price, qty, RoundingMode.UNNECESSARY));
+    }
+}
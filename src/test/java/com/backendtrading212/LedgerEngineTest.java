@@ -0,0 +1,279 @@
+package com.backendtrading212;
+
+import com.backendtrading212.exception.InsufficientBalanceException;
+import com.backendtrading212.exception.InsufficientHoldingsException;
+import com.backendtrading212.exception.InvalidTradeException;
+import com.backendtrading212.exception.LedgerUnavailableException;
+import com.backendtrading212.ledger.LedgerEngine;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.model.User;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.LedgerDeadLetterRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LedgerEngineTest {
+
+    @InjectMocks
+    private LedgerEngine ledger;
+
+    @Mock
+    private UserRepository userRepo;
+
+    @Mock
+    private HoldingRepository holdingRepo;
+
+    @Mock
+    private TransactionRepository transactionRepo;
+
+    @Mock
+    private TransactionTemplate txTemplate;
+
+    @Mock
+    private LedgerDeadLetterRepository deadLetters;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(ledger, "partitionCount", 2);
+        ReflectionTestUtils.setField(ledger, "persistBacklog", 100);
+        ReflectionTestUtils.setField(ledger, "maxWriteAttempts", 3);
+        ReflectionTestUtils.invokeMethod(ledger, "start");
+
+        doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(txTemplate).executeWithoutResult(any());
+    }
+
+    @AfterEach
+    void teardown() {
+        ReflectionTestUtils.invokeMethod(ledger, "stop");
+    }
+
+    @Test
+    void testBuyThenSell_LoadsAccountOnceAndWritesBehind() {
+        User user = User.builder()
+                .id(1L)
+                .username("alice")
+                .balance(BigDecimal.valueOf(1000))
+                .build();
+
+        when(userRepo.findByUsername("alice")).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserId(1L)).thenReturn(List.of());
+        when(holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(1L, "BTC")).thenReturn(List.of(
+                Holding.builder().id(7).cryptoSymbol("BTC").quantity(BigDecimal.valueOf(5)).price(BigDecimal.valueOf(100)).build()
+        ));
+
+        ledger.buy("alice", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(5));
+        ledger.sell("alice", "BTC", BigDecimal.valueOf(120), BigDecimal.valueOf(2));
+
+        verify(userRepo, timeout(1000)).adjustBalance(1L, money(240));
+        verify(userRepo, times(1)).findByUsername("alice");
+        verify(userRepo).adjustBalance(1L, money(-500));
+        verify(holdingRepo).upsertHolding(1L, "BTC", BigDecimal.valueOf(5), BigDecimal.valueOf(100));
+        verify(holdingRepo).updateHoldingQuantities(Map.of(7L, BigDecimal.valueOf(3)));
+        verify(transactionRepo).insertTransactions(1L, "BTC", List.of(BigDecimal.valueOf(2)), BigDecimal.valueOf(120), "SELL");
+    }
+
+    @Test
+    void testBuy_InsufficientBalance_RejectedInMemory() {
+        User user = User.builder()
+                .id(2L)
+                .username("bob")
+                .balance(BigDecimal.valueOf(200))
+                .build();
+
+        when(userRepo.findByUsername("bob")).thenReturn(user);
+
+        assertThrows(InsufficientBalanceException.class, () ->
+                ledger.buy("bob", "ETH", BigDecimal.valueOf(100), BigDecimal.valueOf(5))
+        );
+
+        verify(userRepo, never()).adjustBalance(any(), any());
+    }
+
+    @Test
+    void testSell_InsufficientHoldings_RejectedInMemory() {
+        User user = User.builder()
+                .id(3L)
+                .username("eric")
+                .balance(BigDecimal.valueOf(1000))
+                .build();
+
+        when(userRepo.findByUsername("eric")).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserId(3L)).thenReturn(List.of(
+                Holding.builder().cryptoSymbol("ETH").quantity(BigDecimal.ONE).price(BigDecimal.valueOf(2000)).build()
+        ));
+
+        assertThrows(InsufficientHoldingsException.class, () ->
+                ledger.sell("eric", "ETH", BigDecimal.valueOf(2000), BigDecimal.valueOf(3))
+        );
+
+        verify(holdingRepo, never()).getHoldingsByUserIdAndSymbolOrderedByPrice(any(), any());
+        verify(userRepo, never()).adjustBalance(any(), any());
+    }
+
+    @Test
+    void testFailedWriteBehind_EvictsAccountSoItReloadsFromDatabase() throws InterruptedException {
+        User user = User.builder()
+                .id(5L)
+                .username("hana")
+                .balance(BigDecimal.valueOf(1000))
+                .build();
+
+        when(userRepo.findByUsername("hana")).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserId(5L)).thenReturn(List.of());
+        doThrow(new DataIntegrityViolationException("lot rejected"))
+                .when(holdingRepo).upsertHolding(5L, "BTC", BigDecimal.valueOf(5), BigDecimal.valueOf(100));
+
+        ledger.buy("hana", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(5));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (writeFailures() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // The failed buy is gone from memory, so the full balance is available again.
+        ledger.buy("hana", "ETH", BigDecimal.valueOf(200), BigDecimal.valueOf(5));
+
+        verify(userRepo, timeout(1000)).adjustBalance(5L, money(-1000));
+        verify(userRepo, times(2)).findByUsername("hana");
+        verify(deadLetters).insert(eq("hana"), eq("BUY"), eq("BTC"), eq(BigDecimal.valueOf(100)), eq(BigDecimal.valueOf(5)),
+                isNull(), contains("lot rejected"));
+        assertEquals(1.0, writeFailures());
+    }
+
+    @Test
+    void testLostWriteBehind_StopsAcceptingTradesForThePartition() throws InterruptedException {
+        User user = User.builder()
+                .id(6L)
+                .username("ivan")
+                .balance(BigDecimal.valueOf(1000))
+                .build();
+
+        when(userRepo.findByUsername("ivan")).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserId(6L)).thenReturn(List.of());
+        doThrow(new DataIntegrityViolationException("lot rejected"))
+                .when(holdingRepo).upsertHolding(6L, "BTC", BigDecimal.valueOf(5), BigDecimal.valueOf(100));
+        doThrow(new DataIntegrityViolationException("dead letter rejected"))
+                .when(deadLetters).insert(any(), any(), any(), any(), any(), any(), any());
+
+        ledger.buy("ivan", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(5));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (writeFailures() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThrows(LedgerUnavailableException.class, () ->
+                ledger.buy("ivan", "ETH", BigDecimal.valueOf(200), BigDecimal.ONE));
+        verify(userRepo, never()).adjustBalance(eq(6L), eq(money(-200)));
+    }
+
+    @Test
+    void testJournal_RejectsQuantitiesBeyondTheJournaledRange(@TempDir Path journalDir) {
+        LedgerEngine engine = journaledLedger(journalDir);
+
+        assertThrows(InvalidTradeException.class, () ->
+                engine.buy("gina", "SHIB", new BigDecimal("0.01"), new BigDecimal("1000000000")));
+        verify(userRepo, never()).findByUsername(any());
+        ReflectionTestUtils.invokeMethod(engine, "stop");
+    }
+
+    @Test
+    void testJournal_RestartRestoresAccountsFromSnapshotAndTail(@TempDir Path journalDir) throws Exception {
+        User user = User.builder()
+                .id(4L)
+                .username("gina")
+                .balance(BigDecimal.valueOf(1000))
+                .build();
+
+        when(userRepo.findByUsername("gina")).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserId(4L)).thenReturn(List.of());
+        when(userRepo.advanceJournal(any(), any(), anyLong())).thenReturn(true);
+
+        LedgerEngine first = journaledLedger(journalDir);
+        first.buy("gina", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(5));
+        verify(userRepo, timeout(1000)).advanceJournal(4L, money(-500), 1L);
+        ReflectionTestUtils.invokeMethod(first, "stop");
+
+        LedgerEngine second = journaledLedger(journalDir);
+        second.buy("gina", "BTC", BigDecimal.valueOf(100), BigDecimal.ONE);
+        ReflectionTestUtils.invokeMethod(second, "stop");
+
+        reset(userRepo, holdingRepo, transactionRepo);
+        LedgerEngine third = journaledLedger(journalDir);
+        verify(userRepo).advanceJournal(4L, money(-500), 1L);
+        verify(userRepo).advanceJournal(4L, money(-100), 2L);
+        verify(holdingRepo, never()).upsertHolding(any(), any(), any(), any());
+
+        when(userRepo.advanceJournal(any(), any(), anyLong())).thenReturn(true);
+        when(holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(4L, "BTC")).thenReturn(List.of(
+                Holding.builder().id(9).cryptoSymbol("BTC").quantity(qty(6)).price(BigDecimal.valueOf(100)).build()
+        ));
+
+        third.sell("gina", "BTC", BigDecimal.valueOf(120), BigDecimal.valueOf(6));
+        assertThrows(InsufficientHoldingsException.class, () ->
+                third.sell("gina", "BTC", BigDecimal.valueOf(120), BigDecimal.ONE)
+        );
+
+        verify(userRepo, timeout(1000)).advanceJournal(4L, money(720), 3L);
+        verify(holdingRepo, timeout(1000)).deleteHoldingsByIds(List.of(9L));
+        verify(userRepo, never()).findByUsername(any());
+        ReflectionTestUtils.invokeMethod(third, "stop");
+    }
+
+    private LedgerEngine journaledLedger(Path journalDir) {
+        LedgerEngine engine = new LedgerEngine();
+        ReflectionTestUtils.setField(engine, "userRepo", userRepo);
+        ReflectionTestUtils.setField(engine, "holdingRepo", holdingRepo);
+        ReflectionTestUtils.setField(engine, "transactionRepo", transactionRepo);
+        ReflectionTestUtils.setField(engine, "txTemplate", txTemplate);
+        ReflectionTestUtils.setField(engine, "deadLetters", deadLetters);
+        ReflectionTestUtils.setField(engine, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(engine, "partitionCount", 2);
+        ReflectionTestUtils.setField(engine, "persistBacklog", 100);
+        ReflectionTestUtils.setField(engine, "maxWriteAttempts", 3);
+        ReflectionTestUtils.setField(engine, "journalEnabled", true);
+        ReflectionTestUtils.setField(engine, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(engine, "segmentRecords", 16);
+        ReflectionTestUtils.setField(engine, "fsyncBatch", 1);
+        ReflectionTestUtils.setField(engine, "fsyncIntervalMs", 0L);
+        ReflectionTestUtils.invokeMethod(engine, "start");
+        return engine;
+    }
+
+    private double writeFailures() {
+        return meterRegistry.counter("trading.ledger.write.failures").count();
+    }
+
+    private static BigDecimal qty(long value) {
+        return BigDecimal.valueOf(value).setScale(10);
+    }
+
+    private static BigDecimal money(long value) {
+        return BigDecimal.valueOf(value).setScale(2);
+    }
+}
@@ -0,0 +1,118 @@
+package com.backendtrading212;
+
+import com.backendtrading212.job.LotCompactionJob;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.service.TradingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "trading.compaction.enabled=true",
+        "trading.compaction.interval-ms=3600000",
+        "trading.compaction.dust-threshold=0.5",
+        "trading.compaction.batch-size=1"
+})
+class LotCompactionTest {
+
+    // Runs once, on another thread, right after a sell has read its lots and before it writes them.
+    private static volatile Runnable afterLotRead;
+
+    @TestConfiguration
+    static class InterleavingConfiguration {
+        @Bean
+        @Primary
+        HoldingRepository interleavingHoldingRepository() {
+            return new HoldingRepository() {
+                @Override
+                public List<Holding> getHoldingsByUserIdAndSymbolOrderedByPrice(Long userId, String symbol) {
+                    List<Holding> lots = super.getHoldingsByUserIdAndSymbolOrderedByPrice(userId, symbol);
+                    Runnable hook = afterLotRead;
+                    afterLotRead = null;
+                    if (hook != null) {
+                        CompletableFuture.runAsync(hook).join();
+                    }
+                    return lots;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private TradingService tradingService;
+
+    @Autowired
+    private LotCompactionJob compactionJob;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    void clearHook() {
+        afterLotRead = null;
+    }
+
+    @Test
+    void sellRacingCompactionNeitherCreatesNorDestroysHoldings() {
+        String username = "compaction-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, new BigDecimal("1000"));
+        Long userId = jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+        for (String price : List.of("100", "110", "120")) {
+            jdbc.update("INSERT INTO holdings(user_id, crypto_symbol, quantity, price) VALUES (?, 'BTC', 0.1, ?)",
+                    userId, new BigDecimal(price));
+        }
+
+        ReflectionTestUtils.setField(compactionJob, "lastUserId", userId - 1);
+        afterLotRead = compactionJob::compact;
+        tradingService.sell(username, "BTC", new BigDecimal("130"), new BigDecimal("0.1"));
+
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM holdings WHERE user_id = ?", Integer.class, userId));
+        assertEquals(0, new BigDecimal("0.2").compareTo(jdbc.queryForObject(
+                "SELECT SUM(quantity) FROM holdings WHERE user_id = ?", BigDecimal.class, userId)));
+        assertEquals(new BigDecimal("1013.00"), jdbc.queryForObject(
+                "SELECT balance FROM users WHERE id = ?", BigDecimal.class, userId));
+    }
+
+    @Test
+    void eachRunOnlyScansTheNextRangeOfAccounts() {
+        Long first = userWithDust();
+        Long second = userWithDust();
+        ReflectionTestUtils.setField(compactionJob, "lastUserId", first - 1);
+
+        compactionJob.compact();
+        assertEquals(1, lots(first));
+        assertEquals(2, lots(second));
+
+        compactionJob.compact();
+        assertEquals(1, lots(second));
+    }
+
+    private Long userWithDust() {
+        String username = "compaction-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, BigDecimal.ZERO);
+        Long userId = jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+        for (String price : List.of("100", "110")) {
+            jdbc.update("INSERT INTO holdings(user_id, crypto_symbol, quantity, price) VALUES (?, 'ETH', 0.1, ?)",
+                    userId, new BigDecimal(price));
+        }
+        return userId;
+    }
+
+    private int lots(Long userId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM holdings WHERE user_id = ?", Integer.class, userId);
+    }
+}
@@ -0,0 +1,78 @@
+package com.backendtrading212;
+
+import com.backendtrading212.marketdata.FileTickSource;
+import com.backendtrading212.marketdata.LatestPriceTable;
+import com.backendtrading212.marketdata.MarketDataService;
+import com.backendtrading212.marketdata.TickRingBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MarketDataTest {
+
+    @Test
+    void ringRejectsWhenFullAndPreservesOrderAcrossWrap() {
+        TickRingBuffer ring = new TickRingBuffer(4);
+        List<Long> drained = new ArrayList<>();
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(i, round * 10L + i, 0));
+            }
+            assertFalse(ring.offer(9, 99, 0));
+            assertEquals(4, ring.drain((symbolId, price, ts) -> drained.add(price), 16));
+        }
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 10L, 11L, 12L, 13L, 20L, 21L, 22L, 23L), drained);
+        assertEquals(0, ring.drain((symbolId, price, ts) -> fail(), 16));
+    }
+
+    @Test
+    void tableServesOnlyFreshQuotesAndBoundsSymbols() {
+        LatestPriceTable table = new LatestPriceTable(2, 1_000);
+        table.publish(table.symbolId("BTC"), 2_000_050, System.currentTimeMillis());
+        table.publish(table.symbolId("ETH"), 150_000, System.currentTimeMillis() - 5_000);
+
+        assertEquals(-1, table.symbolId("DOGE"));
+        assertEquals(Map.of("BTC", new BigDecimal("20000.50")), table.freshPrices(Set.of("BTC", "ETH", "DOGE")));
+    }
+
+    @Test
+    void fileReplayIsConflatedIntoLatestPrices() throws Exception {
+        String ticks = """
+                # symbol,price
+                BTC,20000
+                ETH,1500.5
+                BTC,20001.25
+                bad line
+                BTC,20002.999
+                """;
+        LatestPriceTable table = new LatestPriceTable(16, 60_000);
+        MarketDataService service = new MarketDataService();
+        ReflectionTestUtils.setField(service, "source", new FileTickSource(new ByteArrayResource(ticks.getBytes(StandardCharsets.US_ASCII)), 0, false));
+        ReflectionTestUtils.setField(service, "prices", table);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "ringSize", 16);
+        ReflectionTestUtils.setField(service, "drainBatch", 16);
+
+        ReflectionTestUtils.invokeMethod(service, "start");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (table.quote("BTC") == null || table.quote("BTC").priceCents() != 2_000_300) {
+            assertTrue(System.currentTimeMillis() < deadline, "ticks were not published");
+            Thread.sleep(5);
+        }
+        ReflectionTestUtils.invokeMethod(service, "stop");
+
+        assertEquals(150_050, table.quote("ETH").priceCents());
+    }
+}
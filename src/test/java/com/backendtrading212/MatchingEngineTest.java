@@ -0,0 +1,201 @@
+package com.backendtrading212;
+
+import com.backendtrading212.dto.OrderResult;
+import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.matching.MatchingEngine;
+import com.backendtrading212.matching.OrderType;
+import com.backendtrading212.matching.Side;
+import com.backendtrading212.dto.OrderRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "trading.matching.enabled=true")
+@AutoConfigureMockMvc
+class MatchingEngineTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MatchingEngine engine;
+
+    private String buyer;
+    private String seller;
+    private String symbol;
+
+    @BeforeEach
+    void createAccounts() {
+        buyer = "buyer-" + UUID.randomUUID();
+        seller = "seller-" + UUID.randomUUID();
+        symbol = "S" + UUID.randomUUID().toString().substring(0, 8);
+
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", buyer, new BigDecimal("1000.00"));
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", seller, new BigDecimal("0.00"));
+        jdbc.update("INSERT INTO holdings(user_id, crypto_symbol, quantity, price) VALUES (?, ?, ?, ?)",
+                userId(seller), symbol, new BigDecimal("5"), new BigDecimal("50.00"));
+    }
+
+    @Test
+    void crossingOrdersSettleAtMakerPriceAndRefundTheDifference() throws Exception {
+        place(seller, Side.SELL, OrderType.LIMIT, "100.00", "2")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("NEW"));
+
+        place(buyer, Side.BUY, OrderType.LIMIT, "105.00", "3")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PARTIALLY_FILLED"))
+                .andExpect(jsonPath("$.fills[0].price").value(100.00))
+                .andExpect(jsonPath("$.fills[0].settled").value(true))
+                .andExpect(jsonPath("$.remainingQuantity").value(1));
+
+        // 2 filled at 100 and the open unit stays reserved at its 105 limit.
+        assertEquals(new BigDecimal("695.00"), balance(buyer));
+        assertEquals(new BigDecimal("200.00"), balance(seller));
+        assertEquals(0, new BigDecimal("3").compareTo(holdings(seller)));
+        assertEquals(0, new BigDecimal("2").compareTo(holdings(buyer)));
+    }
+
+    @Test
+    void cancellingReleasesReservedCash() throws Exception {
+        String response = place(buyer, Side.BUY, OrderType.LIMIT, "10.00", "4")
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long orderId = mapper.readValue(response, OrderResult.class).getOrderId();
+        assertEquals(new BigDecimal("960.00"), balance(buyer));
+
+        mockMvc.perform(delete("/api/orders/{orderId}", orderId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+
+        assertEquals(new BigDecimal("1000.00"), balance(buyer));
+        mockMvc.perform(delete("/api/orders/{orderId}", orderId)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void sellsCannotExceedUnreservedHoldings() throws Exception {
+        place(seller, Side.SELL, OrderType.LIMIT, "100.00", "4").andExpect(status().isOk());
+
+        place(seller, Side.SELL, OrderType.LIMIT, "100.00", "2").andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void directSellsCannotSpendEscrowedUnits() throws Exception {
+        place(seller, Side.SELL, OrderType.LIMIT, "100.00", "4").andExpect(status().isOk());
+        assertEquals(0, BigDecimal.ONE.compareTo(holdings(seller)));
+
+        TradeRequest sell = TradeRequest.builder()
+                .username(seller).symbol(symbol).price(new BigDecimal("90.00")).quantity(new BigDecimal("2")).build();
+        mockMvc.perform(post("/api/sell")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(sell)))
+                .andExpect(status().isBadRequest());
+        assertEquals(new BigDecimal("0.00"), balance(seller));
+    }
+
+    @Test
+    void resetCancelsOpenOrdersWithoutReturningTheirReservations() throws Exception {
+        place(buyer, Side.BUY, OrderType.LIMIT, "10.00", "4").andExpect(status().isOk());
+        place(seller, Side.SELL, OrderType.LIMIT, "100.00", "2").andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/reset/{username}", buyer)).andExpect(status().isOk());
+        mockMvc.perform(post("/api/reset/{username}", seller)).andExpect(status().isOk());
+
+        assertEquals(new BigDecimal("10000.00"), balance(buyer));
+        assertEquals(new BigDecimal("10000.00"), balance(seller));
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM order_reservations WHERE user_id IN (?, ?)",
+                Integer.class, userId(buyer), userId(seller)));
+
+        // Nothing from before the reset is left on the book to trade against the new accounts.
+        place(seller, Side.SELL, OrderType.LIMIT, "10.00", "1")
+                .andExpect(status().isBadRequest());
+        place(buyer, Side.BUY, OrderType.LIMIT, "100.00", "1")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("NEW"));
+        assertEquals(new BigDecimal("9900.00"), balance(buyer));
+    }
+
+    @Test
+    void reservationsFromBeforeAResetCannotPayForFills() throws Exception {
+        String response = place(buyer, Side.BUY, OrderType.LIMIT, "10.00", "4")
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long orderId = mapper.readValue(response, OrderResult.class).getOrderId();
+        // A reset that the engine did not see, as when a reset races an order being placed.
+        jdbc.update("UPDATE users SET balance = 10000.00, epoch = epoch + 1 WHERE username = ?", buyer);
+
+        place(seller, Side.SELL, OrderType.LIMIT, "10.00", "2")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fills[0].settled").value(false));
+
+        assertEquals(new BigDecimal("10000.00"), balance(buyer));
+        assertEquals(0, BigDecimal.ZERO.compareTo(holdings(buyer)));
+        engine.cancel(orderId);
+        assertEquals(new BigDecimal("10000.00"), balance(buyer));
+    }
+
+    @Test
+    void reservationsLeftByAShutdownAreReturnedOnStartup() {
+        jdbc.update("DELETE FROM holdings WHERE user_id = ?", userId(seller));
+        jdbc.update("INSERT INTO order_reservations(order_id, user_id, epoch, crypto_symbol, quantity, price) VALUES (?, ?, 0, ?, ?, ?)",
+                1L, userId(seller), symbol, new BigDecimal("5"), new BigDecimal("50.00"));
+        jdbc.update("INSERT INTO order_reservations(order_id, user_id, epoch, crypto_symbol, cash) VALUES (?, ?, 0, ?, ?)",
+                2L, userId(buyer), symbol, new BigDecimal("40.00"));
+
+        ReflectionTestUtils.invokeMethod(engine, "returnOrphanedReservations");
+
+        assertEquals(0, new BigDecimal("5").compareTo(holdings(seller)));
+        assertEquals(new BigDecimal("1040.00"), balance(buyer));
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM order_reservations WHERE order_id IN (1, 2)", Integer.class));
+    }
+
+    private ResultActions place(String username, Side side, OrderType type, String price, String quantity) throws Exception {
+        OrderRequest request = OrderRequest.builder()
+                .username(username)
+                .symbol(symbol)
+                .side(side)
+                .type(type)
+                .price(new BigDecimal(price))
+                .quantity(new BigDecimal(quantity))
+                .build();
+        return mockMvc.perform(post("/api/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(request)));
+    }
+
+    private Long userId(String username) {
+        return jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+    }
+
+    private BigDecimal balance(String username) {
+        return jdbc.queryForObject("SELECT balance FROM users WHERE username = ?", BigDecimal.class, username);
+    }
+
+    private BigDecimal holdings(String username) {
+        return jdbc.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM holdings WHERE user_id = ? AND crypto_symbol = ?",
+                BigDecimal.class, userId(username), symbol);
+    }
+}
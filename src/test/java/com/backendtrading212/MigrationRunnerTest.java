@@ -0,0 +1,85 @@
+package com.backendtrading212;
+
+import com.backendtrading212.migration.MigrationRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MigrationRunnerTest {
+
+    @TempDir
+    Path dir;
+
+    private final DataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:migrations-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+    private final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+    @Test
+    void appliesPendingMigrationsInVersionOrderOnce() throws Exception {
+        Files.writeString(dir.resolve("V10__add_column.sql"), "ALTER TABLE users ADD COLUMN email VARCHAR(100);");
+        Files.writeString(dir.resolve("V2__create_users.sql"), "CREATE TABLE users (id INT PRIMARY KEY);");
+
+        assertEquals(2, runner(0).migrate());
+        assertEquals(0, runner(0).migrate());
+
+        jdbc.update("INSERT INTO users(id, email) VALUES (1, 'a@b.c')");
+        assertEquals(List.of(2, 10), jdbc.queryForList("SELECT version FROM schema_migrations ORDER BY version", Integer.class));
+    }
+
+    @Test
+    void refusesToStartWhenAnAppliedMigrationChanged() throws Exception {
+        Path script = Files.writeString(dir.resolve("V1__create_users.sql"), "CREATE TABLE users (id INT PRIMARY KEY);");
+        runner(0).migrate();
+
+        Files.writeString(script, "CREATE TABLE users (id BIGINT PRIMARY KEY);");
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> runner(0).migrate());
+        assertTrue(e.getMessage().contains("V1__create_users"), e.getMessage());
+    }
+
+    @Test
+    void baselinesSchemaCreatedBeforeTheRunner() throws Exception {
+        jdbc.execute("CREATE TABLE users (id INT PRIMARY KEY)");
+        Files.writeString(dir.resolve("V1__create_users.sql"), "CREATE TABLE users (id INT PRIMARY KEY);");
+        Files.writeString(dir.resolve("V2__add_name.sql"), "ALTER TABLE users ADD COLUMN name VARCHAR(50);");
+
+        assertEquals(1, runner(1).migrate());
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM schema_migrations", Integer.class));
+    }
+
+    @Test
+    void waitsForAnotherInstanceThatIsMigrating() throws Exception {
+        runner(0).migrate();
+        Files.writeString(dir.resolve("V1__create_users.sql"), "CREATE TABLE users (id INT PRIMARY KEY);");
+
+        CompletableFuture<Integer> second;
+        try (Connection other = dataSource.getConnection()) {
+            other.setAutoCommit(false);
+            other.createStatement().executeQuery("SELECT id FROM schema_migrations_lock WHERE id = 1 FOR UPDATE").close();
+
+            second = CompletableFuture.supplyAsync(() -> runner(0).migrate());
+            Thread.sleep(200);
+            assertFalse(second.isDone());
+            assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM schema_migrations", Integer.class));
+            other.rollback();
+        }
+
+        assertEquals(1, second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, runner(0).migrate());
+    }
+
+    private MigrationRunner runner(int baselineVersion) {
+        return new MigrationRunner(dataSource, dir.toUri().toString(), baselineVersion);
+    }
+}
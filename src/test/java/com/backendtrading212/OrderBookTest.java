@@ -0,0 +1,86 @@
+package com.backendtrading212;
+
+import com.backendtrading212.matching.Order;
+import com.backendtrading212.matching.OrderBook;
+import com.backendtrading212.matching.OrderType;
+import com.backendtrading212.matching.Side;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderBookTest {
+
+    private final List<long[]> fills = new ArrayList<>();
+    private final OrderBook book = new OrderBook((taker, maker, price, quantity) ->
+            fills.add(new long[]{taker.getId(), maker.getId(), price, quantity}));
+
+    @Test
+    void matchesBestPriceFirstThenTimePriority() {
+        book.submit(limit(1, Side.SELL, 101, 5));
+        book.submit(limit(2, Side.SELL, 100, 5));
+        book.submit(limit(3, Side.SELL, 100, 5));
+
+        Order buy = limit(4, Side.BUY, 101, 12);
+        book.submit(buy);
+
+        assertEquals(3, fills.size());
+        assertArrayEquals(new long[]{4, 2, 100, 5}, fills.get(0));
+        assertArrayEquals(new long[]{4, 3, 100, 5}, fills.get(1));
+        assertArrayEquals(new long[]{4, 1, 101, 2}, fills.get(2));
+        assertFalse(buy.isResting());
+        assertEquals(List.of(new OrderBook.Level(101, 3, 1)), book.levels(Side.SELL, 10));
+    }
+
+    @Test
+    void unfilledLimitRestsAndCanBeCancelled() {
+        book.submit(limit(1, Side.SELL, 100, 2));
+        Order buy = limit(2, Side.BUY, 100, 5);
+        book.submit(buy);
+
+        assertTrue(buy.isResting());
+        assertEquals(3, buy.getRemaining());
+        assertEquals(List.of(new OrderBook.Level(100, 3, 1)), book.levels(Side.BUY, 10));
+
+        assertSame(buy, book.cancel(2));
+        assertNull(book.cancel(2));
+        assertTrue(book.levels(Side.BUY, 10).isEmpty());
+        assertEquals(0, book.restingOrders());
+    }
+
+    @Test
+    void marketOrdersNeverRestAndRespectTheirCap() {
+        book.submit(limit(1, Side.SELL, 100, 2));
+        book.submit(limit(2, Side.SELL, 110, 2));
+
+        Order capped = new Order(3, 1, Side.BUY, OrderType.MARKET, 105, 5);
+        book.submit(capped);
+        assertEquals(3, capped.getRemaining());
+        assertFalse(capped.isResting());
+
+        Order uncapped = new Order(4, 1, Side.BUY, OrderType.MARKET, 0, 5);
+        book.submit(uncapped);
+        assertEquals(3, uncapped.getRemaining());
+        assertFalse(uncapped.isResting());
+        assertTrue(book.levels(Side.SELL, 10).isEmpty());
+    }
+
+    @Test
+    void keepsLevelsSortedAcrossManyPrices() {
+        for (int i = 0; i < 200; i++) {
+            book.submit(limit(i + 1, Side.BUY, 1000 - (i * 7919) % 500, 1));
+        }
+
+        List<OrderBook.Level> bids = book.levels(Side.BUY, 200);
+        for (int i = 1; i < bids.size(); i++) {
+            assertTrue(bids.get(i - 1).priceTicks() > bids.get(i).priceTicks());
+        }
+        assertEquals(200, bids.stream().mapToLong(OrderBook.Level::quantity).sum());
+    }
+
+    private static Order limit(long id, Side side, long price, long quantity) {
+        return new Order(id, 1, side, OrderType.LIMIT, price, quantity);
+    }
+}
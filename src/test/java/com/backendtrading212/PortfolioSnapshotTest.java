@@ -0,0 +1,45 @@
+package com.backendtrading212;
+
+import com.backendtrading212.dto.PortfolioSnapshot;
+import com.backendtrading212.service.PortfolioService;
+import com.backendtrading212.service.TradingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class PortfolioSnapshotTest {
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private TradingService tradingService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void snapshotCombinesBalanceHoldingsAndPnlAtOneVersion() {
+        String username = "portfolio-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, new BigDecimal("10000"));
+        tradingService.buy(username, "BTC", new BigDecimal("100"), new BigDecimal("2"));
+        tradingService.buy(username, "ETH", new BigDecimal("50"), BigDecimal.ONE);
+        tradingService.sell(username, "BTC", new BigDecimal("150"), BigDecimal.ONE);
+
+        PortfolioSnapshot snapshot = portfolioService.snapshot(username);
+
+        assertEquals(0, snapshot.balance().compareTo(new BigDecimal("9900")));
+        assertEquals(3, snapshot.version());
+        assertEquals(2, snapshot.holdings().size());
+        assertEquals(2, snapshot.pnl().size());
+        assertEquals("BTC", snapshot.pnl().get(0).symbol());
+        assertEquals(0, snapshot.pnl().get(0).realizedPnL().compareTo(new BigDecimal("50")));
+    }
+}
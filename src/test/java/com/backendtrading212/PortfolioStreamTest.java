@@ -0,0 +1,116 @@
+package com.backendtrading212;
+
+import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.stream.PortfolioStreamService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "trading.stream.coalesce-interval-ms=3600000",
+        "trading.stream.heartbeat-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+class PortfolioStreamTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private PortfolioStreamService portfolioStream;
+
+    private String username;
+
+    @BeforeEach
+    void createUser() {
+        username = "stream-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, new BigDecimal("1000"));
+    }
+
+    @Test
+    void tradesAreCoalescedIntoOneUpdatePerFlush() throws Exception {
+        MvcResult stream = subscribe();
+
+        buy("BTC", 100);
+        buy("ETH", 50);
+        portfolioStream.flush();
+
+        String events = awaitEvents(stream, 2);
+        assertEquals(2, occurrences(events, "\"type\":\"BUY\""));
+        assertEquals(1, occurrences(events, "\"balance\":850.00"));
+    }
+
+    @Test
+    void idleSubscribersCostNoStatements() throws Exception {
+        subscribe();
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            portfolioStream.flush();
+            portfolioStream.heartbeat();
+            capture.assertAtMost(0);
+        }
+    }
+
+    private MvcResult subscribe() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/stream/{username}", username))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvents(stream, 1);
+        return stream;
+    }
+
+    private void buy(String symbol, int price) throws Exception {
+        TradeRequest request = TradeRequest.builder()
+                .username(username)
+                .symbol(symbol)
+                .price(BigDecimal.valueOf(price))
+                .quantity(BigDecimal.ONE)
+                .build();
+        mockMvc.perform(post("/api/buy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+    }
+
+    private static String awaitEvents(MvcResult stream, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = stream.getResponse().getContentAsString();
+        while ((occurrences(content, "event:portfolio") < count || !content.endsWith("\n\n"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = stream.getResponse().getContentAsString();
+        }
+        assertEquals(count, occurrences(content, "event:portfolio"), content);
+        return content;
+    }
+
+    private static int occurrences(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,180 @@
+package com.backendtrading212;
+
+import com.backendtrading212.dto.TransactionQuery;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.PositionRepository;
+import com.backendtrading212.repository.TransactionRepository;
+import com.backendtrading212.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class QueryPlanTest {
+
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\* public\\.(\\w+)\\.tableScan");
+    private static final Pattern ACCESS_PATH = Pattern.compile("\"public\"\\.\"(\\w+)\"\\s+/\\* public\\.(\\w+)");
+    private static final String[] SYMBOLS = {"BTC", "ETH", "SOL", "ADA"};
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private HoldingRepository holdingRepo;
+
+    @Autowired
+    private TransactionRepository transactionRepo;
+
+    @Autowired
+    private PositionRepository positionRepo;
+
+    private String username;
+    private Long userId;
+
+    @BeforeEach
+    void seed() {
+        for (int u = 0; u < 20; u++) {
+            String name = "plan-" + UUID.randomUUID();
+            jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", name, new BigDecimal("1000000"));
+            Long id = userRepo.findIdByUsername(name);
+
+            // A few resets leave stale epochs behind, as they would until AccountPurgeJob catches up.
+            for (int epoch = 0; epoch < 4; epoch++) {
+                if (epoch > 0) userRepo.resetBalance(id);
+                List<Holding> lots = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    String symbol = SYMBOLS[i % SYMBOLS.length];
+                    BigDecimal price = BigDecimal.valueOf(100 + i);
+                    lots.add(Holding.builder().userId(id.intValue()).cryptoSymbol(symbol).quantity(BigDecimal.ONE).price(price).build());
+                    transactionRepo.insertTransaction(id, symbol, BigDecimal.ONE, price, "BUY");
+                }
+                holdingRepo.upsertHoldings(lots);
+                positionRepo.rebuildPositions(id);
+            }
+
+            username = name;
+            userId = id;
+        }
+        // Plan against collected statistics, as MySQL would. With H2's defaults every user_id-led index
+        // costs the same, so the foreign key's own index wins ties against the (user_id, epoch, ...) keys.
+        jdbc.execute("ANALYZE");
+    }
+
+    @Test
+    void requestPathQueriesUseIndexes() {
+        Set<String> statements;
+        try (StatementCapture capture = StatementCapture.start()) {
+            userRepo.findByUsername(username);
+            userRepo.findByIds(List.of(userId));
+            holdingRepo.getHoldingsByUserId(userId);
+            holdingRepo.getHoldingByUserIdAndSymbol(userId, "BTC");
+            holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(userId, "BTC");
+            holdingRepo.getHoldingsByUserIdsOrderedByPrice(List.of(userId));
+            holdingRepo.findDustLotGroups(userId, userId, BigDecimal.TEN);
+            holdingRepo.lockDustLots(userId, "BTC", BigDecimal.TEN);
+            holdingRepo.updateHoldingQuantity(userId, "ETH", BigDecimal.TEN);
+            holdingRepo.purgeStaleHoldings(userId, 0, 10);
+            transactionRepo.getTransactionsByUserId(userId);
+            transactionRepo.findTransactions(TransactionQuery.builder().userId(userId).limit(10).build());
+            transactionRepo.findTransactions(TransactionQuery.builder().userId(userId).symbol("BTC")
+                    .afterTimestamp(new Timestamp(System.currentTimeMillis())).afterId(Integer.MAX_VALUE).limit(10).build());
+            transactionRepo.getLatestPrices(List.of("DOGE", "XRP"));
+            transactionRepo.purgeStaleTransactions(userId, 0, 10);
+            positionRepo.getPositionsByUserId(userId);
+            positionRepo.rebuildPositions(userId);
+            positionRepo.purgeStalePositions(userId, 0);
+            statements = capture.shapes();
+        }
+
+        for (String sql : statements) {
+            String plan = explain(sql);
+            Matcher scan = TABLE_SCAN.matcher(plan);
+            assertFalse(scan.find(), () -> "full scan of " + scan.group(1) + " for: " + sql + "\n" + plan);
+        }
+    }
+
+    @Test
+    void currentEpochReadsSeekOnUserAndEpoch() {
+        assertAccess("holdings", "uq_holdings_lot", () -> holdingRepo.getHoldingsByUserId(userId));
+        assertAccess("holdings", "uq_holdings_lot", () -> holdingRepo.getHoldingByUserIdAndSymbol(userId, "BTC"));
+        assertAccess("holdings", "uq_holdings_lot", () -> holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(userId, "BTC"));
+        assertAccess("holdings", "uq_holdings_lot", () -> holdingRepo.lockDustLots(userId, "BTC", BigDecimal.TEN));
+        assertAccess("holdings", "uq_holdings_lot", () -> holdingRepo.updateHoldingQuantity(userId, "ETH", BigDecimal.TEN));
+        assertAccess("holdings", "uq_holdings_lot", () -> holdingRepo.purgeStaleHoldings(userId, 0, 10));
+        assertAccess("transactions", "idx_transactions_user_time", () -> transactionRepo.getTransactionsByUserId(userId));
+        assertAccess("transactions", "idx_transactions_user_time",
+                () -> transactionRepo.findTransactions(TransactionQuery.builder().userId(userId).limit(10).build()));
+        assertAccess("transactions", "idx_transactions_user_symbol_time",
+                () -> transactionRepo.findTransactions(TransactionQuery.builder().userId(userId).symbol("BTC")
+                        .afterTimestamp(new Timestamp(System.currentTimeMillis())).afterId(Integer.MAX_VALUE).limit(10).build()));
+        assertAccess("transactions", "idx_transactions_user_time", () -> transactionRepo.purgeStaleTransactions(userId, 0, 10));
+        assertAccess("positions", "PRIMARY_KEY_\\w+", () -> positionRepo.getPositionsByUserId(userId));
+        assertAccess("positions", "PRIMARY_KEY_\\w+", () -> positionRepo.purgeStalePositions(userId, 0));
+    }
+
+    @Test
+    void lastTradePriceRebuildLooksUpEachSymbolByIndex() {
+        String rebuild;
+        try (StatementCapture capture = StatementCapture.start()) {
+            transactionRepo.rebuildLastTradePrices();
+            rebuild = capture.shapes().iterator().next();
+        }
+
+        String plan = explain(rebuild);
+        Matcher scan = TABLE_SCAN.matcher(plan);
+        int scans = 0;
+        while (scan.find()) scans++;
+        assertEquals(1, scans, () -> "only the driving pass over transactions may scan:\n" + plan);
+        assertTrue(plan.contains("idx_transactions_symbol_time"), plan);
+    }
+
+    private void assertAccess(String table, String index, Runnable call) {
+        String sql;
+        try (StatementCapture capture = StatementCapture.start()) {
+            call.run();
+            sql = capture.shapes().iterator().next();
+        }
+
+        String plan = explain(sql);
+        Matcher access = ACCESS_PATH.matcher(plan);
+        String chosen = null;
+        while (chosen == null && access.find()) {
+            if (access.group(1).equals(table)) chosen = access.group(2);
+        }
+        assertNotNull(chosen, () -> "no access path for " + table + " in:\n" + plan);
+        assertTrue(chosen.matches(index), "expected " + index + " but planned " + chosen + " for: " + sql + "\n" + plan);
+    }
+
+    private String explain(String shape) {
+        String sql = "EXPLAIN " + shape.replace("(?...)", "(?, ?)");
+        return jdbc.execute((ConnectionCallback<String>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        });
+    }
+}
@@ -0,0 +1,184 @@
+package com.backendtrading212;
+
+import com.backendtrading212.datasource.ReadRouting;
+import com.backendtrading212.datasource.ReplicaRoutingDataSource;
+import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.migration.MigrationRunner;
+import com.backendtrading212.repository.TransactionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "trading.datasource.replicas.enabled=true",
+        "trading.datasource.replicas.urls=" + ReplicaRoutingTest.REPLICA_URL + ",jdbc:h2:tcp://127.0.0.1:1/unreachable",
+        "trading.datasource.replicas.connection-timeout=250ms",
+        "trading.datasource.replicas.read-your-writes-window=1m",
+        "trading.datasource.replicas.health-interval-ms=600000"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-routing;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static JdbcTemplate replica;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private ReadRouting readRouting;
+
+    @Autowired
+    private TransactionRepository transactionRepo;
+
+    @BeforeAll
+    static void createReplica() {
+        DataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        new MigrationRunner(replicaDataSource, "classpath:db/migration", 0).migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+    }
+
+    @Test
+    void readsGoToReplicaUntilUserTrades() throws Exception {
+        jdbc.update("INSERT INTO users(id, username, balance) VALUES (1, 'alice', 1000.00)");
+        replica.update("INSERT INTO users(id, username, balance) VALUES (1, 'alice', 777.00)");
+
+        mockMvc.perform(get("/api/balance/alice"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("777.00"));
+
+        TradeRequest buy = TradeRequest.builder()
+                .username("alice").symbol("BTC").price(BigDecimal.TEN).quantity(BigDecimal.ONE).build();
+        mockMvc.perform(post("/api/buy")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(buy)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/balance/alice"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("990.00"));
+    }
+
+    @Test
+    void portfolioIsReadFromOneSource() throws Exception {
+        jdbc.update("INSERT INTO users(id, username, balance) VALUES (2, 'bob', 1000.00)");
+        jdbc.update("INSERT INTO holdings(user_id, crypto_symbol, quantity, price) VALUES (2, 'ETH', 1, 10.00)");
+        replica.update("INSERT INTO users(id, username, balance) VALUES (2, 'bob', 777.00)");
+        replica.update("INSERT INTO holdings(user_id, crypto_symbol, quantity, price) VALUES (2, 'BTC', 3, 20.00)");
+
+        mockMvc.perform(get("/api/portfolio/bob"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(777.00))
+                .andExpect(jsonPath("$.holdings[0].cryptoSymbol").value("BTC"))
+                .andExpect(jsonPath("$.holdings.length()").value(1));
+    }
+
+    @Test
+    void pinnedReadsStayOnOneReplicaAcrossThreads() throws Exception {
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:pin-primary;DB_CLOSE_DELAY=-1", "sa", "");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("a", new DriverManagerDataSource("jdbc:h2:mem:pin-a;DB_CLOSE_DELAY=-1", "sa", ""));
+        replicas.put("b", new DriverManagerDataSource("jdbc:h2:mem:pin-b;DB_CLOSE_DELAY=-1", "sa", ""));
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, 1, new SimpleMeterRegistry());
+        JdbcTemplate template = new JdbcTemplate(routing);
+        Supplier<String> database = () -> template.queryForObject("SELECT DATABASE()", String.class);
+
+        Set<String> unpinned = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            unpinned.add(ReplicaRoutingDataSource.readOnly(database));
+        }
+        assertEquals(Set.of("PIN-A", "PIN-B"), unpinned);
+
+        ReplicaRoutingDataSource.Pin pin = readRouting.pin("carol");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> reads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reads.add(pool.submit(() -> readRouting.read(pin, database)));
+            }
+            Set<String> pinned = new HashSet<>();
+            for (Future<String> read : reads) {
+                pinned.add(read.get());
+            }
+            assertEquals(1, pinned.size(), pinned::toString);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void replicaPricesAreNotCachedForOtherReaders() {
+        jdbc.update("INSERT INTO last_trade_price(crypto_symbol, price, traded_at) VALUES ('SOL', 150.00, NOW())");
+        replica.update("INSERT INTO last_trade_price(crypto_symbol, price, traded_at) VALUES ('SOL', 140.00, NOW())");
+
+        assertEquals(new BigDecimal("140.00"), ReplicaRoutingDataSource.readOnly(
+                () -> transactionRepo.getLatestPrices(List.of("SOL")).get("SOL")));
+        assertEquals(new BigDecimal("150.00"), transactionRepo.getLatestPrices(List.of("SOL")).get("SOL"));
+    }
+
+    @Test
+    void explicitCredentialsGoToThePrimary() throws Exception {
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:credentials-primary;DB_CLOSE_DELAY=-1");
+        Map<String, DataSource> replicas = Map.of("a", new DriverManagerDataSource("jdbc:h2:mem:credentials-a;DB_CLOSE_DELAY=-1"));
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, 1, new SimpleMeterRegistry());
+
+        try (Connection connection = ReplicaRoutingDataSource.readOnly(() -> {
+            try {
+                return routing.getConnection("sa", "");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        })) {
+            assertEquals("jdbc:h2:mem:credentials-primary", connection.getMetaData().getURL());
+        }
+    }
+
+    @Test
+    void unreachableReplicaIsEjected() throws Exception {
+        ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+
+        routing.checkHealth();
+
+        assertEquals(List.of("replica-0"), routing.healthyReplicas());
+    }
+}
@@ -0,0 +1,80 @@
+package com.backendtrading212;
+
+import com.backendtrading212.metrics.RepositoryMetricsAspect;
+import com.backendtrading212.model.Holding;
+import com.backendtrading212.repository.HoldingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class RepositoryMetricsAspectTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private HoldingRepository holdingRepo;
+
+    @BeforeEach
+    void setup() {
+        HoldingRepository target = new HoldingRepository();
+        ReflectionTestUtils.setField(target, "jdbc", jdbc);
+
+        RepositoryMetricsAspect aspect = new RepositoryMetricsAspect();
+        ReflectionTestUtils.setField(aspect, "meterRegistry", registry);
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        holdingRepo = factory.getProxy();
+    }
+
+    @Test
+    void testQuery_RecordsLatencyAndRows() {
+        when(jdbc.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of(new Holding(), new Holding()));
+
+        holdingRepo.getHoldingsByUserId(1L);
+        holdingRepo.getHoldingsByUserId(1L);
+
+        assertEquals(2, registry.get("trading.repository.calls")
+                .tags("repository", "HoldingRepository", "method", "getHoldingsByUserId", "outcome", "success")
+                .timer().count());
+        assertEquals(4, registry.get("trading.repository.rows")
+                .tags("repository", "HoldingRepository", "method", "getHoldingsByUserId")
+                .counter().count());
+    }
+
+    @Test
+    void testUpdate_RecordsAffectedRows() {
+        when(jdbc.queryForList(anyString(), eq(Long.class), any(Object[].class))).thenReturn(List.of(1L, 2L, 3L));
+
+        holdingRepo.purgeStaleHoldings(1L, 2, 10);
+
+        assertEquals(3, registry.get("trading.repository.rows")
+                .tags("repository", "HoldingRepository", "method", "purgeStaleHoldings")
+                .counter().count());
+    }
+
+    @Test
+    void testFailure_RecordedAsErrorAndRethrown() {
+        when(jdbc.update(anyString(), any(Object[].class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> holdingRepo.deleteHoldingById(7L));
+
+        assertEquals(1, registry.get("trading.repository.calls")
+                .tags("method", "deleteHoldingById", "outcome", "error")
+                .timer().count());
+        assertEquals(0, registry.get("trading.repository.calls")
+                .tags("method", "deleteHoldingById", "outcome", "success")
+                .timer().count());
+    }
+}
@@ -0,0 +1,139 @@
+package com.backendtrading212;
+
+import com.backendtrading212.dto.BatchTradeRequest;
+import com.backendtrading212.dto.TradeRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StatementBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private String username;
+
+    @BeforeEach
+    void createUser() {
+        username = "budget-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, new BigDecimal("1000000"));
+    }
+
+    @Test
+    void buyAndSellStayWithinBudget() throws Exception {
+        try (StatementCapture capture = StatementCapture.start()) {
+            trade("/api/buy", "BTC", 100, 1);
+            capture.assertAtMost(6).assertNoRepeatedShapes();
+        }
+
+        trade("/api/buy", "BTC", 110, 1);
+        trade("/api/buy", "BTC", 120, 1);
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            trade("/api/sell", "BTC", 130, 3);
+            capture.assertAtMost(7).assertNoRepeatedShapes();
+        }
+    }
+
+    @Test
+    void readsDoNotScaleWithHistory() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            trade("/api/buy", "SYM" + i, 10 + i, 1);
+        }
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            mockMvc.perform(get("/api/pnl/{username}", username)).andExpect(status().isOk());
+            capture.assertAtMost(2).assertNoRepeatedShapes();
+        }
+        try (StatementCapture capture = StatementCapture.start()) {
+            mockMvc.perform(get("/api/holdings/{username}", username)).andExpect(status().isOk());
+            capture.assertAtMost(2).assertNoRepeatedShapes();
+        }
+    }
+
+    @Test
+    void portfolioCountsStatementsFromItsWorkerThreads() throws Exception {
+        trade("/api/buy", "BTC", 100, 1);
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            mockMvc.perform(get("/api/portfolio/{username}", username)).andExpect(status().isOk());
+            capture.assertAtMost(6).assertNoRepeatedShapes();
+            assertTrue(capture.shapes().stream().anyMatch(shape -> shape.contains("FROM holdings")), capture.shapes()::toString);
+            assertTrue(capture.shapes().stream().anyMatch(shape -> shape.contains("FROM positions")), capture.shapes()::toString);
+        }
+    }
+
+    @Test
+    void streamedTransactionsCountTowardTheirRequest() throws Exception {
+        trade("/api/buy", "BTC", 100, 1);
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            MvcResult stream = mockMvc.perform(get("/api/transactions/{username}/stream", username))
+                    .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(stream)).andExpect(status().isOk());
+            assertTrue(capture.shapes().stream().anyMatch(shape -> shape.contains("FROM transactions")), capture.shapes()::toString);
+        }
+    }
+
+    @Test
+    void batchIssuesConstantStatements() throws Exception {
+        List<TradeRequest> trades = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            trades.add(request("SYM" + (i % 10), 10 + i, 1, "BUY"));
+        }
+        BatchTradeRequest batch = BatchTradeRequest.builder().mode(BatchTradeRequest.Mode.ALL_OR_NOTHING).trades(trades).build();
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            mockMvc.perform(post("/api/trades/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(mapper.writeValueAsString(batch)))
+                    .andExpect(status().isOk());
+            capture.assertAtMost(8).assertNoRepeatedShapes();
+        }
+    }
+
+    private void trade(String path, String symbol, int price, int quantity) throws Exception {
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request(symbol, price, quantity, null))))
+                .andExpect(status().isOk());
+    }
+
+    private TradeRequest request(String symbol, int price, int quantity, String side) {
+        return TradeRequest.builder()
+                .username(username)
+                .symbol(symbol)
+                .price(BigDecimal.valueOf(price))
+                .quantity(BigDecimal.valueOf(quantity))
+                .side(side)
+                .build();
+    }
+}
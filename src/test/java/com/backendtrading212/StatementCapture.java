@@ -0,0 +1,41 @@
+package com.backendtrading212;
+
+import com.backendtrading212.metrics.StatementStats;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementCapture implements AutoCloseable {
+
+    private final StatementStats stats = StatementStats.begin();
+
+    public static StatementCapture start() {
+        return new StatementCapture();
+    }
+
+    public int total() {
+        return stats.total();
+    }
+
+    public Set<String> shapes() {
+        return stats.shapes().keySet();
+    }
+
+    public StatementCapture assertAtMost(int maxStatements) {
+        assertTrue(stats.total() <= maxStatements,
+                () -> "expected at most " + maxStatements + " statements but got " + stats.total() + ": " + stats.shapes());
+        return this;
+    }
+
+    public StatementCapture assertNoRepeatedShapes() {
+        assertTrue(stats.repeatedShapes(2).isEmpty(),
+                () -> "repeated statement shapes: " + stats.repeatedShapes(2));
+        return this;
+    }
+
+    @Override
+    public void close() {
+        stats.end();
+    }
+}
@@ -0,0 +1,126 @@
+package com.backendtrading212;
+
+import com.backendtrading212.journal.JournalRecord;
+import com.backendtrading212.journal.TradeJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TradeJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testAppendAndReplay_SurvivesReopen() throws IOException {
+        try (TradeJournal journal = TradeJournal.open(dir, 16, 1, 0)) {
+            journal.append(JournalRecord.Type.BUY, 1L, "BTC", 10_000_00L, 5_000_000_000L);
+            journal.append(JournalRecord.Type.SELL, 1L, "BTC", 12_000_00L, 2_500_000_000L);
+            journal.append(JournalRecord.Type.RESET, 2L, null, 0, 0);
+        }
+
+        try (TradeJournal journal = TradeJournal.open(dir, 16, 1, 0)) {
+            assertEquals(3, journal.lastSequence());
+
+            List<JournalRecord> records = replay(journal, 0);
+            assertEquals(3, records.size());
+            assertEquals(JournalRecord.Type.SELL, records.get(1).type());
+            assertEquals("BTC", records.get(1).symbol());
+            assertEquals(12_000_00L, records.get(1).priceCents());
+            assertEquals(2_500_000_000L, records.get(1).quantityUnits());
+            assertNull(records.get(2).symbol());
+
+            assertEquals(List.of(3L), replay(journal, 2).stream().map(JournalRecord::sequence).toList());
+        }
+    }
+
+    @Test
+    void testRecovery_TruncatedMidRecord_DropsTornTailAndContinues() throws IOException {
+        try (TradeJournal journal = TradeJournal.open(dir, 16, 1, 0)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(JournalRecord.Type.BUY, 1L, "ETH", 2_000_00L + i, 1_000_000_000L);
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.setLength(2L * TradeJournal.RECORD_SIZE + 30);
+        }
+
+        try (TradeJournal journal = TradeJournal.open(dir, 16, 1, 0)) {
+            assertEquals(2, journal.lastSequence());
+            JournalRecord next = journal.append(JournalRecord.Type.SELL, 1L, "ETH", 2_100_00L, 500_000_000L);
+            assertEquals(3, next.sequence());
+        }
+
+        try (TradeJournal journal = TradeJournal.open(dir, 16, 1, 0)) {
+            List<JournalRecord> records = replay(journal, 0);
+            assertEquals(List.of(1L, 2L, 3L), records.stream().map(JournalRecord::sequence).toList());
+            assertEquals(JournalRecord.Type.SELL, records.get(2).type());
+            assertEquals(2_100_00L, records.get(2).priceCents());
+        }
+    }
+
+    @Test
+    void testRecovery_CorruptedRecord_IsTreatedAsTail() throws IOException {
+        try (TradeJournal journal = TradeJournal.open(dir, 16, 1, 0)) {
+            journal.append(JournalRecord.Type.BUY, 1L, "SOL", 150_00L, 1_000_000_000L);
+            journal.append(JournalRecord.Type.BUY, 1L, "SOL", 151_00L, 1_000_000_000L);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.seek(TradeJournal.RECORD_SIZE + 30);
+            file.write(0x7F);
+        }
+
+        try (TradeJournal journal = TradeJournal.open(dir, 16, 1, 0)) {
+            assertEquals(1, journal.lastSequence());
+            assertEquals(1, replay(journal, 0).size());
+        }
+    }
+
+    @Test
+    void testSegments_RollAndTruncateBefore() throws IOException {
+        try (TradeJournal journal = TradeJournal.open(dir, 4, 4, 0)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(JournalRecord.Type.BUY, 1L, "ADA", 1_00L, 1_000_000_000L);
+            }
+            assertEquals(3, segmentCount());
+
+            journal.truncateBefore(6);
+            assertEquals(2, segmentCount());
+            assertEquals(List.of(9L, 10L), replay(journal, 8).stream().map(JournalRecord::sequence).toList());
+        }
+
+        try (TradeJournal journal = TradeJournal.open(dir, 4, 4, 0)) {
+            assertEquals(10, journal.lastSequence());
+            assertEquals(11, journal.append(JournalRecord.Type.BUY, 1L, "ADA", 1_00L, 1L).sequence());
+        }
+    }
+
+    private static List<JournalRecord> replay(TradeJournal journal, long after) {
+        List<JournalRecord> records = new ArrayList<>();
+        journal.replay(after, records::add);
+        return records;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).findFirst().orElseThrow();
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).count();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.backendtrading212;
+
+import com.backendtrading212.service.TradeRetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TradeRetryPolicyTest {
+
+    @InjectMocks
+    private TradeRetryPolicy retryPolicy;
+
+    @Mock
+    private TransactionTemplate txTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(retryPolicy, "maxAttempts", 3);
+        ReflectionTestUtils.invokeMethod(retryPolicy, "registerMetrics");
+
+        doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(txTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void testExecute_RetriesConflictUntilSuccess() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        retryPolicy.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("version changed");
+            }
+        });
+
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, meterRegistry.counter("trading.trade.retries").count());
+        assertEquals(0.0, meterRegistry.counter("trading.trade.conflicts").count());
+    }
+
+    @Test
+    void testExecute_GivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(OptimisticLockingFailureException.class, () ->
+                retryPolicy.execute(() -> {
+                    attempts.incrementAndGet();
+                    throw new OptimisticLockingFailureException("version changed");
+                })
+        );
+
+        assertEquals(3, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("trading.trade.conflicts").count());
+    }
+
+    @Test
+    void testExecute_DoesNotRetryBusinessErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () ->
+                retryPolicy.execute(() -> {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException("boom");
+                })
+        );
+
+        assertEquals(1, attempts.get());
+    }
+}
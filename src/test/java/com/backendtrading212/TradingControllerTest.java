@@ -1,30 +1,47 @@
 package com.backendtrading212;
 
 import com.backendtrading212.controller.TradingController;
+import com.backendtrading212.controller.WireFormatConfiguration;
+import com.backendtrading212.dto.BatchTradeRequest;
+import com.backendtrading212.dto.PortfolioSnapshot;
+import com.backendtrading212.dto.ProfitAndLoss;
 import com.backendtrading212.dto.TradeRequest;
+import com.backendtrading212.dto.TradeResult;
+import com.backendtrading212.dto.TransactionQuery;
 import com.backendtrading212.exception.InsufficientBalanceException;
 import com.backendtrading212.exception.InsufficientHoldingsException;
 import com.backendtrading212.exception.InvalidTradeException;
+import com.backendtrading212.exception.PortfolioUnavailableException;
 import com.backendtrading212.model.Holding;
 import com.backendtrading212.model.Transaction;
-import com.backendtrading212.model.User;
 import com.backendtrading212.repository.HoldingRepository;
 import com.backendtrading212.repository.TransactionRepository;
 import com.backendtrading212.repository.UserRepository;
+import com.backendtrading212.service.BatchTradingService;
+import com.backendtrading212.service.PortfolioService;
 import com.backendtrading212.service.TradingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -32,6 +49,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(TradingController.class)
+@Import(WireFormatConfiguration.class)
 public class TradingControllerTest {
 
     @Autowired
@@ -40,6 +58,12 @@ public class TradingControllerTest {
     @MockBean
     private TradingService tradingService;
 
+    @MockBean
+    private BatchTradingService batchTradingService;
+
+    @MockBean
+    private PortfolioService portfolioService;
+
     @MockBean
     private UserRepository userRepo;
 
@@ -89,21 +113,19 @@ public class TradingControllerTest {
 
     @Test
     void testReset() throws Exception {
+        Mockito.when(userRepo.findIdByUsername("user1")).thenReturn(1L);
+
         mockMvc.perform(post("/api/reset/user1"))
                 .andExpect(status().isOk())
                 .andExpect(content().string("Account reset"));
 
-        Mockito.verify(userRepo).resetBalance("user1");
+        Mockito.verify(userRepo).resetBalance(1L);
     }
 
     @Test
     void testBalance() throws Exception {
-        User user = User.builder()
-                .username("user1")
-                .balance(BigDecimal.valueOf(1234.56))
-                .build();
-
-        Mockito.when(userRepo.findByUsername("user1")).thenReturn(user);
+        Mockito.when(userRepo.findIdByUsername("user1")).thenReturn(1L);
+        Mockito.when(userRepo.findBalanceById(1L)).thenReturn(BigDecimal.valueOf(1234.56));
 
         mockMvc.perform(get("/api/balance/user1"))
                 .andExpect(status().isOk())
@@ -119,26 +141,74 @@ public class TradingControllerTest {
                 .type("BUY")
                 .build();
 
-        Mockito.when(transactionRepo.getTransactionsByUsername("user1")).thenReturn(List.of(tx));
+        Mockito.when(transactionRepo.findTransactions(any())).thenReturn(List.of(tx));
 
         mockMvc.perform(get("/api/transactions/user1"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].cryptoSymbol").value("BTC"));
+                .andExpect(jsonPath("$[0].cryptoSymbol").value("BTC"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
     }
 
     @Test
-    void testHoldings() throws Exception {
-        User user = User.builder()
-                .id(1L)
-                .username("user1")
+    void testTransactions_FullPageReturnsCursor() throws Exception {
+        Transaction tx = Transaction.builder()
+                .id(42)
+                .cryptoSymbol("BTC")
+                .type("BUY")
+                .timestamp(new Timestamp(1700000000000L))
                 .build();
 
+        Mockito.when(transactionRepo.findTransactions(any())).thenReturn(List.of(tx));
+
+        mockMvc.perform(get("/api/transactions/user1")
+                        .param("limit", "1")
+                        .param("symbol", "BTC")
+                        .param("after", "1700000005000,50"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "1700000000000,42"));
+
+        ArgumentCaptor<TransactionQuery> query = ArgumentCaptor.forClass(TransactionQuery.class);
+        Mockito.verify(transactionRepo).findTransactions(query.capture());
+        assertEquals("BTC", query.getValue().getSymbol());
+        assertEquals(1, query.getValue().getLimit());
+        assertEquals(50, query.getValue().getAfterId());
+    }
+
+    @Test
+    void testTransactions_Stream() throws Exception {
+        Transaction tx = Transaction.builder()
+                .cryptoSymbol("ETH")
+                .type("SELL")
+                .build();
+
+        Mockito.doAnswer(inv -> {
+            Consumer<Transaction> sink = inv.getArgument(1);
+            sink.accept(tx);
+            sink.accept(tx);
+            return null;
+        }).when(transactionRepo).streamTransactions(any(), any());
+
+        MvcResult result = mockMvc.perform(get("/api/transactions/user1/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("ETH", mapper.readTree(lines[0]).get("cryptoSymbol").asText());
+    }
+
+    @Test
+    void testHoldings() throws Exception {
         Holding holding = Holding.builder()
                 .cryptoSymbol("ETH")
                 .quantity(BigDecimal.valueOf(5))
                 .build();
 
-        Mockito.when(userRepo.findByUsername("user1")).thenReturn(user);
+        Mockito.when(userRepo.findIdByUsername("user1")).thenReturn(1L);
         Mockito.when(holdingRepo.getHoldingsByUserId(1L)).thenReturn(List.of(holding));
 
         mockMvc.perform(get("/api/holdings/user1"))
@@ -148,15 +218,63 @@ public class TradingControllerTest {
 
     @Test
     void testGetPnL() throws Exception {
-        Map<String, Object> pnl = Map.of("symbol", "BTC", "totalPnL", BigDecimal.valueOf(200.50));
-        Mockito.when(tradingService.getProfitAndLoss("user1")).thenReturn(List.of(pnl));
+        Mockito.when(tradingService.getProfitAndLoss("user1")).thenReturn(List.of(pnl()));
 
         mockMvc.perform(get("/api/pnl/user1"))
                 .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$[0].symbol").value("BTC"))
+                .andExpect(jsonPath("$[0].realizedPnL").value(50.25))
                 .andExpect(jsonPath("$[0].totalPnL").value(200.50));
     }
 
+    @Test
+    void testGetPnL_BinaryEncodings() throws Exception {
+        Mockito.when(tradingService.getProfitAndLoss("user1")).thenReturn(List.of(pnl()));
+        byte[] json = mockMvc.perform(get("/api/pnl/user1")).andReturn().getResponse().getContentAsByteArray();
+
+        for (MediaType type : List.of(MediaType.APPLICATION_CBOR, new MediaType("application", "x-jackson-smile"))) {
+            MvcResult result = mockMvc.perform(get("/api/pnl/user1").accept(type))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(type))
+                    .andReturn();
+            byte[] body = result.getResponse().getContentAsByteArray();
+            ObjectMapper decoder = new ObjectMapper(type.equals(MediaType.APPLICATION_CBOR) ? new CBORFactory() : new SmileFactory());
+
+            assertEquals(List.of(pnl()), List.of(decoder.readValue(body, ProfitAndLoss[].class)));
+            assertTrue(body.length < json.length);
+        }
+    }
+
+    @Test
+    void testPortfolio() throws Exception {
+        Holding holding = Holding.builder().cryptoSymbol("BTC").quantity(BigDecimal.ONE).price(new BigDecimal("100.00")).build();
+        Mockito.when(portfolioService.snapshot("user1"))
+                .thenReturn(new PortfolioSnapshot("user1", new BigDecimal("9900.00"), 3, List.of(holding), List.of(pnl())));
+
+        mockMvc.perform(get("/api/portfolio/user1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(9900.00))
+                .andExpect(jsonPath("$.version").value(3))
+                .andExpect(jsonPath("$.holdings[0].cryptoSymbol").value("BTC"))
+                .andExpect(jsonPath("$.pnl[0].totalPnL").value(200.50));
+    }
+
+    @Test
+    void testPortfolio_DeadlineExceeded() throws Exception {
+        Mockito.when(portfolioService.snapshot("user1"))
+                .thenThrow(new PortfolioUnavailableException("not ready", null));
+
+        mockMvc.perform(get("/api/portfolio/user1"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    private static ProfitAndLoss pnl() {
+        return new ProfitAndLoss("BTC", new BigDecimal("2.0000000000"), new BigDecimal("1.0000000000"),
+                new BigDecimal("1.0000000000"), new BigDecimal("100.00"), new BigDecimal("250.25"),
+                new BigDecimal("50.25"), new BigDecimal("150.25"), new BigDecimal("200.50"));
+    }
+
     @Test
     void testBuy_InsufficientBalance() throws Exception {
         TradeRequest request = TradeRequest.builder()
@@ -219,7 +337,7 @@ public class TradingControllerTest {
 
     @Test
     void testBalance_UserNotFound_InternalServerError() throws Exception {
-        Mockito.when(userRepo.findByUsername("ghost")).thenThrow(new RuntimeException("User not found"));
+        Mockito.when(userRepo.findIdByUsername("ghost")).thenThrow(new RuntimeException("User not found"));
 
         mockMvc.perform(get("/api/balance/ghost"))
                 .andExpect(status().isInternalServerError())
@@ -246,5 +364,31 @@ public class TradingControllerTest {
                 .andExpect(content().string("Unexpected error: Database connection failed"));
     }
 
-}
+    @Test
+    void testBatch_AllOrNothingRejected_ReturnsBadRequest() throws Exception {
+        BatchTradeRequest request = BatchTradeRequest.builder()
+                .mode(BatchTradeRequest.Mode.ALL_OR_NOTHING)
+                .trades(List.of(
+                        TradeRequest.builder().username("user1").symbol("BTC").side("BUY")
+                                .price(BigDecimal.valueOf(100)).quantity(BigDecimal.ONE).build(),
+                        TradeRequest.builder().username("user1").symbol("ETH").side("SELL")
+                                .price(BigDecimal.valueOf(50)).quantity(BigDecimal.TEN).build()))
+                .build();
 
+        Mockito.when(batchTradingService.submit(any())).thenReturn(List.of(
+                TradeResult.builder().index(0).status(TradeResult.Status.ABORTED).build(),
+                TradeResult.builder().index(1).status(TradeResult.Status.REJECTED).message("Insufficient holdings").build()));
+
+        mockMvc.perform(post("/api/trades/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].status").value("ABORTED"))
+                .andExpect(jsonPath("$[1].status").value("REJECTED"));
+
+        ArgumentCaptor<BatchTradeRequest> captor = ArgumentCaptor.forClass(BatchTradeRequest.class);
+        Mockito.verify(batchTradingService).submit(captor.capture());
+        assertEquals(2, captor.getValue().getTrades().size());
+        assertEquals("SELL", captor.getValue().getTrades().get(1).getSide());
+    }
+}
@@ -1,17 +1,26 @@
 package com.backendtrading212;
 
+import com.backendtrading212.dto.ProfitAndLoss;
 import com.backendtrading212.exception.InsufficientBalanceException;
+import com.backendtrading212.exception.InsufficientHoldingsException;
+import com.backendtrading212.exception.InvalidTradeException;
+import com.backendtrading212.marketdata.LatestPriceTable;
 import com.backendtrading212.model.Holding;
-import com.backendtrading212.model.Transaction;
+import com.backendtrading212.model.Position;
 import com.backendtrading212.model.User;
 import com.backendtrading212.repository.HoldingRepository;
+import com.backendtrading212.repository.PositionRepository;
 import com.backendtrading212.repository.TransactionRepository;
 import com.backendtrading212.repository.UserRepository;
 
+import com.backendtrading212.service.TradeRetryPolicy;
 import com.backendtrading212.service.TradingService;
+import com.backendtrading212.stream.TradeCommittedEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 import java.math.BigDecimal;
 import java.util.*;
 
@@ -32,9 +41,23 @@ public class TradingServiceTest {
     @Mock
     private TransactionRepository transactionRepo;
 
+    @Mock
+    private PositionRepository positionRepo;
+
+    @Mock
+    private TradeRetryPolicy retryPolicy;
+
+    @Mock
+    private ApplicationEventPublisher events;
+
     @BeforeEach
     void setup() {
         MockitoAnnotations.openMocks(this);
+
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(0).run();
+            return null;
+        }).when(retryPolicy).execute(any());
     }
 
     @Test
@@ -45,13 +68,16 @@ public class TradingServiceTest {
                 .balance(BigDecimal.valueOf(1000))
                 .build();
 
-        when(userRepo.findByUsername("alice")).thenReturn(user);
+        when(userRepo.findIdByUsername("alice")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
+        when(userRepo.debitBalance(1L, BigDecimal.valueOf(500))).thenReturn(true);
 
         tradingService.buy("alice", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(5));
 
-        verify(userRepo).updateBalance(1L, BigDecimal.valueOf(500));
+        verify(userRepo).debitBalance(1L, BigDecimal.valueOf(500));
         verify(holdingRepo).upsertHolding(1L, "BTC", BigDecimal.valueOf(5), BigDecimal.valueOf(100));
         verify(transactionRepo).insertTransaction(1L, "BTC", BigDecimal.valueOf(5), BigDecimal.valueOf(100), "BUY");
+        verify(events).publishEvent(new TradeCommittedEvent("alice", "BUY", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(5)));
     }
 
     @Test
@@ -62,13 +88,14 @@ public class TradingServiceTest {
                 .balance(BigDecimal.valueOf(200))
                 .build();
 
-        when(userRepo.findByUsername("bob")).thenReturn(user);
+        when(userRepo.findIdByUsername("bob")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
 
         assertThrows(InsufficientBalanceException.class, () ->
                 tradingService.buy("bob", "ETH", BigDecimal.valueOf(100), BigDecimal.valueOf(5))
         );
 
-        verify(userRepo, never()).updateBalance(any(), any());
+        verify(userRepo).debitBalance(1L, BigDecimal.valueOf(500));
         verify(holdingRepo, never()).upsertHolding(any(), any(), any(), any());
         verify(transactionRepo, never()).insertTransaction(any(), any(), any(), any(), any());
     }
@@ -89,17 +116,20 @@ public class TradingServiceTest {
                 .build();
 
         // Mocks
-        when(userRepo.findByUsername("charlie")).thenReturn(user);
+        when(userRepo.findIdByUsername("charlie")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
         when(holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(2L, "BTC"))
                 .thenReturn(List.of(holding));
+        when(userRepo.creditBalance(2L, BigDecimal.valueOf(200), 0L)).thenReturn(true);
 
         // Call the method under test
         tradingService.sell("charlie", "BTC", BigDecimal.valueOf(50), BigDecimal.valueOf(4));
 
         // Verifications
-        verify(holdingRepo).updateHoldingQuantityById(10L, BigDecimal.valueOf(6));
-        verify(userRepo).updateBalance(2L, BigDecimal.valueOf(300));
-        verify(transactionRepo).insertTransaction(2L, "BTC", BigDecimal.valueOf(4), BigDecimal.valueOf(50), "SELL");
+        verify(holdingRepo).updateHoldingQuantities(Map.of(10L, BigDecimal.valueOf(6)));
+        verify(holdingRepo, never()).deleteHoldingsByIds(any());
+        verify(userRepo).creditBalance(2L, BigDecimal.valueOf(200), 0L);
+        verify(transactionRepo).insertTransactions(2L, "BTC", List.of(BigDecimal.valueOf(4)), BigDecimal.valueOf(50), "SELL");
     }
 
 
@@ -118,16 +148,73 @@ public class TradingServiceTest {
                 .price(BigDecimal.valueOf(40))
                 .build();
 
-        when(userRepo.findByUsername("dana")).thenReturn(user);
+        when(userRepo.findIdByUsername("dana")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
         when(holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(2L, "BTC"))
                 .thenReturn(List.of(holding));
+        when(userRepo.creditBalance(2L, BigDecimal.valueOf(150), 0L)).thenReturn(true);
 
         tradingService.sell("dana", "BTC", BigDecimal.valueOf(50), BigDecimal.valueOf(3));
 
-        verify(holdingRepo).deleteHoldingById(20L);
+        verify(holdingRepo).deleteHoldingsByIds(List.of(20L));
+        verify(holdingRepo, never()).updateHoldingQuantities(any());
     }
 
 
+    @Test
+    void testSell_AcrossLots_AppliesPlanAsBatches() {
+        User user = User.builder()
+                .id(4L)
+                .username("gina")
+                .balance(BigDecimal.valueOf(0))
+                .version(7)
+                .build();
+
+        List<Holding> lots = List.of(
+                Holding.builder().id(1).cryptoSymbol("BTC").quantity(BigDecimal.valueOf(1)).price(BigDecimal.valueOf(10)).build(),
+                Holding.builder().id(2).cryptoSymbol("BTC").quantity(BigDecimal.valueOf(2)).price(BigDecimal.valueOf(20)).build(),
+                Holding.builder().id(3).cryptoSymbol("BTC").quantity(BigDecimal.valueOf(5)).price(BigDecimal.valueOf(30)).build()
+        );
+
+        when(userRepo.findIdByUsername("gina")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(4L, "BTC")).thenReturn(lots);
+        when(userRepo.creditBalance(4L, BigDecimal.valueOf(400), 7L)).thenReturn(true);
+
+        tradingService.sell("gina", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(4));
+
+        verify(holdingRepo).deleteHoldingsByIds(List.of(1L, 2L));
+        verify(holdingRepo).updateHoldingQuantities(Map.of(3L, BigDecimal.valueOf(4)));
+        verify(transactionRepo).insertTransactions(4L, "BTC",
+                List.of(BigDecimal.valueOf(1), BigDecimal.valueOf(2), BigDecimal.valueOf(1)), BigDecimal.valueOf(100), "SELL");
+        verify(holdingRepo, never()).deleteHoldingById(any());
+        verify(holdingRepo, never()).updateHoldingQuantityById(any(), any());
+    }
+
+    @Test
+    void testSell_NotEnoughAcrossLots_RejectedBeforeAnyWrite() {
+        User user = User.builder()
+                .id(4L)
+                .username("gina")
+                .balance(BigDecimal.valueOf(0))
+                .build();
+
+        when(userRepo.findIdByUsername("gina")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(4L, "BTC")).thenReturn(List.of(
+                Holding.builder().id(1).cryptoSymbol("BTC").quantity(BigDecimal.valueOf(1)).price(BigDecimal.valueOf(10)).build(),
+                Holding.builder().id(2).cryptoSymbol("BTC").quantity(BigDecimal.valueOf(2)).price(BigDecimal.valueOf(20)).build()
+        ));
+
+        assertThrows(InsufficientHoldingsException.class, () ->
+                tradingService.sell("gina", "BTC", BigDecimal.valueOf(100), BigDecimal.valueOf(4))
+        );
+
+        verify(userRepo, never()).creditBalance(any(), any(), anyLong());
+        verify(holdingRepo, never()).deleteHoldingsByIds(any());
+        verify(transactionRepo, never()).insertTransactions(any(), any(), any(), any(), any());
+    }
+
     @Test
     void testSell_InsufficientHoldings_ThrowsException() {
         User user = User.builder()
@@ -141,14 +228,18 @@ public class TradingServiceTest {
                 .quantity(BigDecimal.valueOf(1))
                 .build();
 
-        when(userRepo.findByUsername("eric")).thenReturn(user);
+        when(userRepo.findIdByUsername("eric")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
         when(holdingRepo.getHoldingByUserIdAndSymbol(3L, "ETH")).thenReturn(holding);
 
         assertThrows(RuntimeException.class, () ->
                 tradingService.sell("eric", "ETH", BigDecimal.valueOf(2000), BigDecimal.valueOf(3))
         );
 
-        verify(userRepo, never()).updateBalance(any(), any());
+        verify(userRepo, never()).creditBalance(any(), any(), anyLong());
+        verify(holdingRepo, never()).deleteHoldingsByIds(any());
+        verify(holdingRepo, never()).updateHoldingQuantities(any());
+        verify(transactionRepo, never()).insertTransactions(any(), any(), any(), any(), any());
     }
 
     @Test
@@ -159,7 +250,8 @@ public class TradingServiceTest {
                 .balance(BigDecimal.valueOf(500))
                 .build();
 
-        when(userRepo.findByUsername("frank")).thenReturn(user);
+        when(userRepo.findIdByUsername("frank")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
         when(holdingRepo.getHoldingByUserIdAndSymbol(3L, "BTC")).thenReturn(null);
 
         assertThrows(RuntimeException.class, () ->
@@ -167,6 +259,43 @@ public class TradingServiceTest {
         );
     }
 
+    @Test
+    void testSell_LotLargerThanScaledLongRange() {
+        User user = User.builder().id(6L).username("ivan").balance(BigDecimal.ZERO).build();
+        Holding lot = Holding.builder()
+                .id(11)
+                .cryptoSymbol("SHIB")
+                .quantity(new BigDecimal("5000000000.0000000001"))
+                .price(new BigDecimal("0.01"))
+                .build();
+
+        when(userRepo.findIdByUsername("ivan")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
+        when(holdingRepo.getHoldingsByUserIdAndSymbolOrderedByPrice(6L, "SHIB")).thenReturn(List.of(lot));
+        when(userRepo.creditBalance(eq(6L), any(), eq(0L))).thenReturn(true);
+
+        tradingService.sell("ivan", "SHIB", new BigDecimal("0.02"), new BigDecimal("4000000000"));
+
+        verify(holdingRepo).updateHoldingQuantities(Map.of(11L, new BigDecimal("1000000000.0000000001")));
+        verify(userRepo).creditBalance(6L, new BigDecimal("80000000.00"), 0L);
+    }
+
+    @Test
+    void testTrade_RejectsValuesFinerThanTheirColumns() {
+        InvalidTradeException price = assertThrows(InvalidTradeException.class, () ->
+                tradingService.buy("alice", "BTC", new BigDecimal("100.005"), BigDecimal.ONE));
+        assertTrue(price.getMessage().startsWith("Price 100.005 needs at most 2 decimal places"));
+
+        assertThrows(InvalidTradeException.class, () ->
+                tradingService.sell("alice", "BTC", BigDecimal.TEN, new BigDecimal("0.00000000001")));
+        assertThrows(InvalidTradeException.class, () ->
+                tradingService.buy("alice", "BTC", BigDecimal.TEN, new BigDecimal("10000000000")));
+
+        when(userRepo.debitBalance(any(), any())).thenReturn(true);
+        tradingService.buy("alice", "BTC", new BigDecimal("100.500"), new BigDecimal("0.10000000000000"));
+        verify(userRepo).debitBalance(any(), argThat(cost -> cost.compareTo(new BigDecimal("10.05")) == 0));
+    }
+
     @Test
     void testGetProfitAndLoss() {
         User user = User.builder()
@@ -175,39 +304,61 @@ public class TradingServiceTest {
                 .balance(BigDecimal.valueOf(1000))
                 .build();
 
-        when(userRepo.findByUsername("sara")).thenReturn(user);
-
-        List<Transaction> txs = List.of(
-                Transaction.builder()
-                        .userId(5)
-                        .cryptoSymbol("BTC")
-                        .quantity(BigDecimal.valueOf(2))
-                        .price(BigDecimal.valueOf(10000))
-                        .type("BUY")
-                        .build(),
-                Transaction.builder()
-                        .userId(5)
-                        .cryptoSymbol("BTC")
-                        .quantity(BigDecimal.valueOf(1))
-                        .price(BigDecimal.valueOf(15000))
-                        .type("SELL")
-                        .build()
-        );
+        when(userRepo.findIdByUsername("sara")).thenReturn(user.getId());
+        when(userRepo.findById(user.getId())).thenReturn(user);
+
+        Position position = Position.builder()
+                .userId(5)
+                .cryptoSymbol("BTC")
+                .boughtQty(BigDecimal.valueOf(2))
+                .boughtAmount(BigDecimal.valueOf(20000))
+                .soldQty(BigDecimal.valueOf(1))
+                .soldAmount(BigDecimal.valueOf(15000))
+                .build();
 
-        when(transactionRepo.getTransactionsByUserId(5L)).thenReturn(txs);
-        when(transactionRepo.getLatestPriceForSymbol("BTC")).thenReturn(BigDecimal.valueOf(20000));
+        when(positionRepo.getPositionsByUserId(5L)).thenReturn(List.of(position));
+        when(transactionRepo.getLatestPrices(List.of("BTC"))).thenReturn(Map.of("BTC", BigDecimal.valueOf(20000)));
 
-        List<Map<String, Object>> pnlList = tradingService.getProfitAndLoss("sara");
+        List<ProfitAndLoss> pnlList = tradingService.getProfitAndLoss("sara");
 
         assertEquals(1, pnlList.size());
 
-        Map<String, Object> pnl = pnlList.get(0);
-        assertEquals("BTC", pnl.get("symbol"));
-        assertEquals(BigDecimal.valueOf(2), pnl.get("totalBought"));
-        assertEquals(BigDecimal.valueOf(1), pnl.get("totalSold"));
-        assertEquals(BigDecimal.valueOf(1), pnl.get("remainingQty"));
-        assertEquals(0, ((BigDecimal) pnl.get("realizedPnL")).compareTo(BigDecimal.valueOf(5000)));
-        assertEquals(0, ((BigDecimal) pnl.get("unrealizedPnL")).compareTo(BigDecimal.valueOf(10000)));
+        ProfitAndLoss pnl = pnlList.get(0);
+        assertEquals("BTC", pnl.symbol());
+        assertEquals(BigDecimal.valueOf(2), pnl.totalBought());
+        assertEquals(BigDecimal.valueOf(1), pnl.totalSold());
+        assertEquals(BigDecimal.valueOf(1), pnl.remainingQty());
+        assertEquals(0, pnl.realizedPnL().compareTo(BigDecimal.valueOf(5000)));
+        assertEquals(0, pnl.unrealizedPnL().compareTo(BigDecimal.valueOf(10000)));
+        assertEquals(new BigDecimal("10000.00000000"), pnl.avgBuyPrice());
     }
-}
 
+    @Test
+    void testProfitAndLoss_UsesMarketDataPrices() {
+        LatestPriceTable marketPrices = new LatestPriceTable(16, 60_000);
+        marketPrices.publish(marketPrices.symbolId("BTC"), 2_500_000, System.currentTimeMillis());
+        ReflectionTestUtils.setField(tradingService, "marketPrices", marketPrices);
+
+        when(userRepo.findIdByUsername("sara")).thenReturn(5L);
+        when(positionRepo.getPositionsByUserId(5L)).thenReturn(List.of(
+                Position.builder().userId(5).cryptoSymbol("BTC")
+                        .boughtQty(BigDecimal.valueOf(2)).boughtAmount(BigDecimal.valueOf(20000))
+                        .soldQty(BigDecimal.ZERO).soldAmount(BigDecimal.ZERO).build(),
+                Position.builder().userId(5).cryptoSymbol("DOGE")
+                        .boughtQty(BigDecimal.valueOf(100)).boughtAmount(BigDecimal.valueOf(10))
+                        .soldQty(BigDecimal.ZERO).soldAmount(BigDecimal.ZERO).build()));
+        when(transactionRepo.getLatestPrices(List.of("DOGE"))).thenReturn(Map.of("DOGE", new BigDecimal("0.20")));
+
+        List<ProfitAndLoss> pnlList = tradingService.getProfitAndLoss("sara");
+
+        assertEquals(money(25000), pnlList.get(0).currentPrice());
+        assertEquals(0, pnlList.get(0).unrealizedPnL().compareTo(BigDecimal.valueOf(30000)));
+        assertEquals(0, pnlList.get(1).unrealizedPnL().compareTo(BigDecimal.TEN));
+        verify(transactionRepo).getLatestPrices(List.of("DOGE"));
+        verifyNoMoreInteractions(transactionRepo);
+    }
+
+    private static BigDecimal money(long value) {
+        return BigDecimal.valueOf(value).setScale(2);
+    }
+}
@@ -0,0 +1,175 @@
+package com.backendtrading212;
+
+import com.backendtrading212.exception.InsufficientBalanceException;
+import com.backendtrading212.service.TradeRetryPolicy;
+import com.backendtrading212.service.TradingService;
+import com.backendtrading212.service.TransactionGroupCommitter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "trading.transactions.group-commit.enabled=true",
+        "trading.transactions.group-commit.linger=20ms"
+})
+class TransactionGroupCommitTest {
+
+    private static final int TRADERS = 16;
+
+    @Autowired
+    private TradingService tradingService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate txTemplate;
+
+    @Autowired
+    private TradeRetryPolicy retryPolicy;
+
+    @Test
+    void concurrentTradesShareCommitsAndAreDurableOnReturn() throws Exception {
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < TRADERS; i++) {
+            String username = "group-" + UUID.randomUUID();
+            jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, new BigDecimal("10000"));
+            users.add(username);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(TRADERS);
+        try {
+            List<Future<Integer>> rows = new ArrayList<>();
+            for (String username : users) {
+                rows.add(pool.submit(() -> {
+                    start.await();
+                    tradingService.buy(username, "BTC", new BigDecimal("100"), BigDecimal.ONE);
+                    tradingService.buy(username, "BTC", new BigDecimal("90"), BigDecimal.ONE);
+                    tradingService.sell(username, "BTC", new BigDecimal("120"), new BigDecimal("2"));
+                    return jdbc.queryForObject("""
+                            SELECT COUNT(*) FROM transactions t JOIN users u ON u.id = t.user_id WHERE u.username = ?
+                            """, Integer.class, username);
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> count : rows) {
+                assertEquals(4, count.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        DistributionSummary batches = meterRegistry.get("trading.transactions.group-commit.batch.trades").summary();
+        assertTrue(batches.totalAmount() >= TRADERS * 3);
+        assertTrue(batches.count() < batches.totalAmount(), "expected trades to share commits, got " + batches.count() + " flushes");
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE balance <> 10050.00 AND username LIKE 'group-%'", Integer.class));
+    }
+
+    @Test
+    void failedTradeRollsBackAloneAndKeepsItsHistoryAtomic() throws Exception {
+        String rich = "rich-" + UUID.randomUUID();
+        String poor = "poor-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", rich, new BigDecimal("10000"));
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", poor, new BigDecimal("50"));
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> ok = pool.submit(() -> {
+                start.await();
+                tradingService.buy(rich, "ETH", new BigDecimal("100"), BigDecimal.ONE);
+                return null;
+            });
+            Future<?> rejected = pool.submit(() -> {
+                start.await();
+                tradingService.buy(poor, "ETH", new BigDecimal("100"), BigDecimal.ONE);
+                return null;
+            });
+            start.countDown();
+
+            ok.get();
+            ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+            assertInstanceOf(InsufficientBalanceException.class, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(new BigDecimal("9900.00"), balance(rich));
+        assertEquals(1, historyRows(rich));
+        assertEquals(new BigDecimal("50.00"), balance(poor));
+        assertEquals(0, historyRows(poor));
+        assertEquals(0, jdbc.queryForObject("""
+                SELECT COUNT(*) FROM holdings h JOIN users u ON u.id = h.user_id WHERE u.username = ?
+                """, Integer.class, poor));
+    }
+
+    @Test
+    void flushedTradesCountTowardTheirCallersStatements() {
+        String username = "counted-" + UUID.randomUUID();
+        jdbc.update("INSERT INTO users(username, balance) VALUES (?, ?)", username, new BigDecimal("1000"));
+
+        try (StatementCapture capture = StatementCapture.start()) {
+            tradingService.buy(username, "BTC", new BigDecimal("100"), BigDecimal.ONE);
+            assertTrue(capture.shapes().stream().anyMatch(shape -> shape.startsWith("INSERT INTO transactions")),
+                    capture.shapes()::toString);
+        }
+    }
+
+    @Test
+    void tradesSubmittedAfterShutdownFailInsteadOfHanging() throws Exception {
+        TransactionGroupCommitter committer = new TransactionGroupCommitter();
+        ReflectionTestUtils.setField(committer, "txTemplate", txTemplate);
+        ReflectionTestUtils.setField(committer, "retryPolicy", retryPolicy);
+        ReflectionTestUtils.setField(committer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(committer, "batchSize", 16);
+        ReflectionTestUtils.setField(committer, "linger", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(committer, "queueDepth", 16);
+        ReflectionTestUtils.invokeMethod(committer, "start");
+        committer.submit(() -> { }).get(5, TimeUnit.SECONDS);
+
+        ReflectionTestUtils.invokeMethod(committer, "stop");
+
+        CompletableFuture<Void> late = committer.submit(() -> { });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    private BigDecimal balance(String username) {
+        return jdbc.queryForObject("SELECT balance FROM users WHERE username = ?", BigDecimal.class, username);
+    }
+
+    private int historyRows(String username) {
+        return jdbc.queryForObject("""
+                SELECT COUNT(*) FROM transactions t JOIN users u ON u.id = t.user_id WHERE u.username = ?
+                """, Integer.class, username);
+    }
+}